@@ -0,0 +1,135 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-graph primitives: cut counting, KL gain computation, edge lookups, loading a graph
+ * file and generating a random graph, each over the same grid of sizes and densities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmarks {
+
+    static final int PARTS = 2;
+    static final int QUERIES = 1024;
+
+    @Param({"1000", "4000"})
+    int vertices;
+
+    @Param({"0.005", "0.02"})
+    double density;
+
+    Object graph;
+    int[] map;
+    boolean[] locked;
+    Object edgeIndex;
+    int[] queryU;
+    int[] queryV;
+    File graphFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        graph = (Object) Handles.CREATE_RANDOM_GRAPH.invokeExact(vertices, density, 1L);
+        int n = (int) Handles.NUM_VERTICES.invokeExact(graph);
+        map = (int[]) Handles.RANDOM_PARTITION.invokeExact(n, PARTS, 2L);
+        locked = new boolean[n];
+        edgeIndex = (Object) Handles.NEW_EDGE_INDEX.invokeExact(graph);
+
+        // Half of the lookups hit an edge, half pick a random vertex pair (almost always a miss)
+        int[] adjacency = (int[]) Handles.ADJACENCY.invokeExact(graph);
+        int[] pointers = (int[]) Handles.POINTERS.invokeExact(graph);
+        SplittableRandom rand = new SplittableRandom(3);
+        queryU = new int[QUERIES];
+        queryV = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            int u = rand.nextInt(n);
+            queryU[q] = u;
+            queryV[q] = q % 2 == 0 && pointers[u + 1] > pointers[u]
+                    ? adjacency[pointers[u] + rand.nextInt(pointers[u + 1] - pointers[u])]
+                    : rand.nextInt(n);
+        }
+
+        graphFile = File.createTempFile("bench-graph", ".txt");
+        writeGraph(graphFile, n, adjacency, pointers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(graphFile.toPath());
+    }
+
+    @Benchmark
+    public int countCuts() throws Throwable {
+        return (int) Handles.COUNT_CUTS.invokeExact(graph, map);
+    }
+
+    @Benchmark
+    public int[] computeGains() throws Throwable {
+        return (int[]) Handles.COMPUTE_GAINS.invokeExact(graph, map, 0, 1, locked);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int hasEdge() throws Throwable {
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            if ((boolean) Handles.HAS_EDGE.invokeExact(edgeIndex, queryU[q], queryV[q])) found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object loadGraphFile() throws Throwable {
+        return (Object) Handles.LOAD_GRAPH_FILE.invokeExact(graphFile.getPath());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object createRandomGraph() throws Throwable {
+        return (Object) Handles.CREATE_RANDOM_GRAPH.invokeExact(vertices, density, 1L);
+    }
+
+    // The graph file format read by GraphIO.loadGraphFile, without weights
+    private static void writeGraph(File file, int n, int[] adjacency, int[] pointers) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write(Integer.toString(n));
+            out.newLine();
+            writeLine(out, adjacency);
+            writeLine(out, pointers);
+        }
+    }
+
+    private static void writeLine(BufferedWriter out, int[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(';');
+            out.write(Integer.toString(values[i]));
+        }
+        out.newLine();
+    }
+}
@@ -0,0 +1,131 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Method handles to the partitioner. Its classes live in the default package, which a
+ * benchmark (JMH needs a named package) cannot refer to, and most of the hot paths are
+ * package-private. Every handle is looked up once, made accessible and adapted to Object
+ * in place of the application types, so benchmarks call it with invokeExact; being static
+ * final, the handles are constants to the JIT and cost no more than a direct call.
+ */
+final class Handles {
+
+    static final MethodHandle CREATE_RANDOM_GRAPH;   // (int n, double density, long seed) -> Graph
+    static final MethodHandle LOAD_GRAPH_FILE;       // (String path) -> Graph
+    static final MethodHandle NUM_VERTICES;          // (Graph) -> int
+    static final MethodHandle ADJACENCY;             // (Graph) -> int[]
+    static final MethodHandle POINTERS;              // (Graph) -> int[]
+    static final MethodHandle MAX_WEIGHTED_DEGREE;   // (Graph) -> int
+    static final MethodHandle RANDOM_PARTITION;      // (int n, int parts, long seed) -> int[]
+    static final MethodHandle COUNT_CUTS;            // (Graph, int[] map) -> int
+    static final MethodHandle COMPUTE_GAINS;         // (Graph, int[] map, int p1, int p2, boolean[] locked) -> int[]
+    static final MethodHandle NEW_EDGE_INDEX;        // (Graph) -> EdgeIndex
+    static final MethodHandle HAS_EDGE;              // (EdgeIndex, int u, int v) -> boolean
+    static final MethodHandle NEW_ENGINE;            // () -> PartitionEngine
+    static final MethodHandle SET_REFINEMENT;        // (PartitionEngine, Refinement) -> void
+    static final MethodHandle RUN;                   // (PartitionEngine, Graph, int parts, float margin, long seed) -> PartitionResult
+    static final MethodHandle CUT_EDGES;             // (PartitionResult) -> int
+    static final MethodHandle REFINE_PAIR;           // (PartitionEngine, Graph, EdgeIndex, int[] map, int p1, int p2,
+                                                     //  PartBalance, CutTracker, MoveLog) -> boolean
+    static final MethodHandle REFINE_FM;             // (PartitionEngine, Graph, int maxGain, int[] map, int p1,
+                                                     //  int p2, PartBalance, CutTracker, MoveLog) -> boolean
+    static final MethodHandle NEW_PART_BALANCE;      // (Graph, int[] map, int parts, float margin) -> PartBalance
+    static final MethodHandle NEW_CUT_TRACKER;       // (int cuts) -> CutTracker
+    static final MethodHandle NEW_MOVE_LOG;          // () -> MoveLog
+
+    private static final Class<?> REFINEMENT;
+
+    static {
+        try {
+            Class<?> graph = Class.forName("Graph");
+            Class<?> graphGenerator = Class.forName("GraphGenerator");
+            Class<?> graphIO = Class.forName("GraphIO");
+            Class<?> engine = Class.forName("PartitionEngine");
+            Class<?> result = Class.forName("PartitionResult");
+            Class<?> edgeIndex = Class.forName("EdgeIndex");
+            Class<?> partBalance = Class.forName("PartBalance");
+            Class<?> cutTracker = Class.forName("PartitionEngine$CutTracker");
+            Class<?> moveLog = Class.forName("PartitionEngine$MoveLog");
+            REFINEMENT = Class.forName("PartitionEngine$Refinement");
+
+            CREATE_RANDOM_GRAPH = method(graphGenerator, "createRandomGraph", int.class, double.class, long.class);
+            LOAD_GRAPH_FILE = method(graphIO, "loadGraphFile", String.class);
+            NUM_VERTICES = getter(graph, "numVertices");
+            ADJACENCY = getter(graph, "adjacency");
+            POINTERS = getter(graph, "pointers");
+            MAX_WEIGHTED_DEGREE = method(graph, "maxWeightedDegree");
+            RANDOM_PARTITION = method(engine, "randomPartition", int.class, int.class, long.class);
+            COUNT_CUTS = method(engine, "countCuts", graph, int[].class);
+            COMPUTE_GAINS = method(engine, "computeGains", graph, int[].class, int.class, int.class, boolean[].class);
+            NEW_EDGE_INDEX = constructor(edgeIndex, graph);
+            HAS_EDGE = method(edgeIndex, "hasEdge", int.class, int.class);
+            NEW_ENGINE = constructor(engine);
+            SET_REFINEMENT = method(engine, "setRefinement", REFINEMENT);
+            RUN = method(engine, "run", graph, int.class, float.class, long.class);
+            CUT_EDGES = getter(result, "cutEdges");
+            REFINE_PAIR = method(engine, "refinePair", graph, edgeIndex, int[].class, int.class, int.class,
+                    partBalance, cutTracker, moveLog);
+            REFINE_FM = method(engine, "refineFM", graph, int.class, int[].class, int.class, int.class,
+                    partBalance, cutTracker, moveLog);
+            NEW_PART_BALANCE = constructor(partBalance, graph, int[].class, int.class, float.class);
+            NEW_CUT_TRACKER = constructor(cutTracker, int.class);
+            NEW_MOVE_LOG = constructor(moveLog);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private Handles() {
+    }
+
+    // PartitionEngine.Refinement constant by name, e.g. "KL" or "FM"
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object refinement(String name) {
+        return Enum.valueOf((Class) REFINEMENT, name);
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?>... parameters)
+            throws ReflectiveOperationException {
+        Method m = owner.getDeclaredMethod(name, parameters);
+        return erase(MethodHandles.lookup().unreflect(accessible(m)));
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters)
+            throws ReflectiveOperationException {
+        Constructor<?> c = owner.getDeclaredConstructor(parameters);
+        return erase(MethodHandles.lookup().unreflectConstructor(accessible(c)));
+    }
+
+    private static MethodHandle getter(Class<?> owner, String name) throws ReflectiveOperationException {
+        Field f = owner.getDeclaredField(name);
+        return erase(MethodHandles.lookup().unreflectGetter(accessible(f)));
+    }
+
+    private static <T extends AccessibleObject> T accessible(T member) {
+        member.setAccessible(true);
+        return member;
+    }
+
+    // Replace every application type in the handle's signature with Object; primitives,
+    // arrays and JDK types stay as they are
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) type = type.changeParameterType(i, Object.class);
+        }
+        if (isApplicationType(type.returnType())) type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    // Default package classes (nested ones included) are the only ones without a dot in their name
+    private static boolean isApplicationType(Class<?> c) {
+        return !c.isPrimitive() && !c.isArray() && c.getName().indexOf('.') < 0;
+    }
+}
@@ -0,0 +1,26 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar: the JMH command line, writing the results as JSON to
+ * jmh-result.json unless a result format or file is given. All JMH options work as usual,
+ * e.g. "GraphBenchmarks.countCuts -p vertices=4000" or "-rff run-42.json".
+ */
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add(0, "-rf");
+            options.add(1, "json");
+        }
+        if (!options.contains("-rff")) {
+            options.add(0, "-rff");
+            options.add(1, "jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
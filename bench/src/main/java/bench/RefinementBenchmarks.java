@@ -0,0 +1,106 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refinement: one KL or FM pair refinement from a random bisection (PartitionEngine.refinePair
+ * and refineFM), and complete engine runs (initial partition plus all passes) for 2 and 8
+ * parts. A pair refinement changes the map it works on, so every invocation starts from a
+ * fresh copy (PairState, which only refinePair takes, so the runs get no per-invocation
+ * setup); it runs for milliseconds, which keeps that setup out of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefinementBenchmarks {
+
+    static final float MARGIN = 10.0f;
+
+    @Param({"1000", "4000"})
+    int vertices;
+
+    @Param({"0.005", "0.02"})
+    double density;
+
+    @Param({"KL", "FM"})
+    String method;
+
+    Object graph;
+    Object edgeIndex;
+    Object engine;
+    boolean fm;
+    int maxGain;
+    int[] initialMap;
+    int initialCuts;
+
+    // Fresh state for each refinePair call
+    @State(Scope.Thread)
+    public static class PairState {
+        int[] map;
+        Object balance;
+        Object tracker;
+        Object log;
+
+        @Setup(Level.Invocation)
+        public void reset(RefinementBenchmarks bench) throws Throwable {
+            map = bench.initialMap.clone();
+            balance = (Object) Handles.NEW_PART_BALANCE.invokeExact(bench.graph, map, 2, MARGIN);
+            tracker = (Object) Handles.NEW_CUT_TRACKER.invokeExact(bench.initialCuts);
+            log = (Object) Handles.NEW_MOVE_LOG.invokeExact();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        graph = (Object) Handles.CREATE_RANDOM_GRAPH.invokeExact(vertices, density, 1L);
+        int n = (int) Handles.NUM_VERTICES.invokeExact(graph);
+        edgeIndex = (Object) Handles.NEW_EDGE_INDEX.invokeExact(graph);
+        engine = (Object) Handles.NEW_ENGINE.invokeExact();
+        Handles.SET_REFINEMENT.invokeExact(engine, Handles.refinement(method));
+        fm = method.equals("FM");
+        maxGain = (int) Handles.MAX_WEIGHTED_DEGREE.invokeExact(graph);
+        initialMap = (int[]) Handles.RANDOM_PARTITION.invokeExact(n, 2, 2L);
+        initialCuts = (int) Handles.COUNT_CUTS.invokeExact(graph, initialMap);
+    }
+
+    @Benchmark
+    public boolean refinePair(PairState pair) throws Throwable {
+        if (fm) {
+            return (boolean) Handles.REFINE_FM.invokeExact(engine, graph, maxGain, pair.map, 0, 1,
+                    pair.balance, pair.tracker, pair.log);
+        }
+        return (boolean) Handles.REFINE_PAIR.invokeExact(engine, graph, edgeIndex, pair.map, 0, 1,
+                pair.balance, pair.tracker, pair.log);
+    }
+
+    @Benchmark
+    public int runTwoParts() throws Throwable {
+        return run(2);
+    }
+
+    @Benchmark
+    public int runEightParts() throws Throwable {
+        return run(8);
+    }
+
+    private int run(int parts) throws Throwable {
+        Object result = (Object) Handles.RUN.invokeExact(engine, graph, parts, MARGIN, 4L);
+        return (int) Handles.CUT_EDGES.invokeExact(result);
+    }
+}
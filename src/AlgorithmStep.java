@@ -0,0 +1,21 @@
+// Single step in the algorithm
+public class AlgorithmStep {
+    int[] partitionMap;
+    int cutEdges;
+    String description;
+    int vertex1;  // highlighted vertex
+    int vertex2;  // highlighted vertex
+
+    AlgorithmStep(int[] map, int cuts, String desc) {
+        this.partitionMap = map.clone();
+        this.cutEdges = cuts;
+        this.description = desc;
+        this.vertex1 = -1;
+        this.vertex2 = -1;
+    }
+
+    void highlight(int v1, int v2) {
+        this.vertex1 = v1;
+        this.vertex2 = v2;
+    }
+}
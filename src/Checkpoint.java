@@ -0,0 +1,121 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot of a partitioning run in a small binary file, so that a long job can pick up
+ * where it stopped after a restart: the partition map plus the pass, cut count and seed it
+ * was reached with. Map entries take 1, 2 or 4 bytes depending on k, and a CRC32 at the end
+ * catches truncated files. A checkpoint is written to a temporary file next to the target
+ * and then moved over it, so a crash mid-write leaves the previous checkpoint intact.
+ */
+public class Checkpoint {
+
+    static final int MAGIC = 0x4B50434B;   // "KPCK"
+    static final int VERSION = 2;      // 2: seeds drive SplittableRandom (1: java.util.Random)
+    static final int HEADER_BYTES = 41;
+
+    int numParts;
+    float margin;
+    int level;          // multilevel: coarsening level of map (0 = the input graph)
+    int pass;           // refinement passes completed at that level
+    int cuts;
+    long seed;          // seed of the run (initial partition, multilevel coarsening)
+    boolean finished;   // refinement at this level ran to the end
+    int[] map;
+
+    void write(File file) throws IOException {
+        File target = file.getAbsoluteFile();
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            FileOutputStream fileOut = new FileOutputStream(temp);
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(fileOut), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(map.length);
+                out.writeInt(numParts);
+                out.writeFloat(margin);
+                out.writeInt(level);
+                out.writeInt(pass);
+                out.writeInt(cuts);
+                out.writeLong(seed);
+                out.writeBoolean(finished);
+                int bytes = entryBytes(numParts);
+                for (int p : map) {
+                    if (bytes == 1) out.writeByte(p);
+                    else if (bytes == 2) out.writeShort(p);
+                    else out.writeInt(p);
+                }
+                out.writeLong(crc.getValue());
+                // On disk before the move, so the rename never exposes a partly written file
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    static Checkpoint read(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC) throw new IOException(file + " is not a checkpoint file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+            Checkpoint cp = new Checkpoint();
+            int n = in.readInt();
+            cp.numParts = in.readInt();
+            cp.margin = in.readFloat();
+            cp.level = in.readInt();
+            cp.pass = in.readInt();
+            cp.cuts = in.readInt();
+            cp.seed = in.readLong();
+            cp.finished = in.readBoolean();
+            if (n < 0 || cp.numParts < 1) throw new IOException("Corrupt checkpoint header");
+            int bytes = entryBytes(cp.numParts);
+            if (file.length() != HEADER_BYTES + (long) n * bytes + 8) {
+                throw new IOException("Checkpoint size does not match its header");
+            }
+            cp.map = new int[n];
+            for (int v = 0; v < n; v++) {
+                cp.map[v] = bytes == 1 ? in.readUnsignedByte() : bytes == 2 ? in.readUnsignedShort() : in.readInt();
+                if (cp.map[v] >= cp.numParts) throw new IOException("Corrupt checkpoint: part " + cp.map[v]);
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) throw new IOException("Checkpoint checksum mismatch");
+            return cp;
+        }
+    }
+
+    // Check that this checkpoint was taken on a graph with n vertices, partitioned into numParts
+    void validate(int n, int numParts) {
+        if (map.length != n || this.numParts != numParts) {
+            throw new IllegalArgumentException("Checkpoint is for " + map.length + " vertices in "
+                    + this.numParts + " parts, not " + n + " in " + numParts);
+        }
+    }
+
+    private static int entryBytes(int numParts) {
+        return numParts <= 256 ? 1 : numParts <= 65536 ? 2 : 4;
+    }
+}
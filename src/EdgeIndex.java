@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * Edge lookup index over a CSR Graph with sorted rows. The lookup strategy is picked per
+ * vertex by degree: a linear scan for short rows, binary search for medium rows and an
+ * open-addressing hash table for hubs. Small dense graphs get an n x n bit matrix instead.
+ * If the rows are not sorted yet, the constructor sorts them in place with Graph.sortRows:
+ * the graph is the same, but the caller sees its rows (and their weights) reordered.
+ */
+public class EdgeIndex {
+
+    static final int LINEAR_MAX_DEGREE = 8;
+    static final int HUB_MIN_DEGREE = 64;
+    static final int BITSET_MAX_VERTICES = 4096;
+
+    private final Graph g;
+    private final long[] bits;        // adjacency bit matrix, or null
+    private final int words;          // longs per bit matrix row
+    private final int[] hashStart;    // offset of each hub's table, -1 for non-hubs
+    private final int[] hashKeys;     // neighbor ids, -1 = empty slot
+    private final int[] hashSlots;    // CSR position of each key
+
+    EdgeIndex(Graph g) {
+        if (!g.rowsSorted()) g.sortRows();
+        this.g = g;
+        int n = g.numVertices;
+
+        // A bit row costs n/8 bytes against 4 bytes per neighbor, so it pays off from degree n/32
+        if (n <= BITSET_MAX_VERTICES && 32L * g.adjacency.length >= (long) n * n) {
+            words = (n + 63) >>> 6;
+            bits = new long[n * words];
+            for (int u = 0; u < n; u++) {
+                for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                    int v = g.adjacency[i];
+                    bits[u * words + (v >>> 6)] |= 1L << v;
+                }
+            }
+        } else {
+            words = 0;
+            bits = null;
+        }
+
+        hashStart = new int[n];
+        int total = 0;
+        for (int u = 0; u < n; u++) {
+            int degree = g.pointers[u + 1] - g.pointers[u];
+            if (degree >= HUB_MIN_DEGREE) {
+                hashStart[u] = total;
+                total += tableSize(degree);
+            } else {
+                hashStart[u] = -1;
+            }
+        }
+        hashKeys = new int[total];
+        hashSlots = new int[total];
+        Arrays.fill(hashKeys, -1);
+        for (int u = 0; u < n; u++) {
+            if (hashStart[u] < 0) continue;
+            int mask = tableSize(g.pointers[u + 1] - g.pointers[u]) - 1;
+            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                int h = hash(g.adjacency[i]) & mask;
+                while (hashKeys[hashStart[u] + h] != -1) h = (h + 1) & mask;
+                hashKeys[hashStart[u] + h] = g.adjacency[i];
+                hashSlots[hashStart[u] + h] = i;
+            }
+        }
+    }
+
+    boolean hasEdge(int u, int v) {
+        if (bits != null) {
+            return (bits[u * words + (v >>> 6)] & (1L << v)) != 0;
+        }
+        // Look in the shorter row
+        if (g.pointers[v + 1] - g.pointers[v] < g.pointers[u + 1] - g.pointers[u]) {
+            return indexOf(v, u) >= 0;
+        }
+        return indexOf(u, v) >= 0;
+    }
+
+    // Weight of the edge (u, v), or 0 if there is no edge. Both directions of an edge weigh
+    // the same (GraphIO checks it), so like hasEdge this looks in the shorter row.
+    int weight(int u, int v) {
+        if (g.edgeWeights == null) return hasEdge(u, v) ? 1 : 0;
+        if (bits != null && (bits[u * words + (v >>> 6)] & (1L << v)) == 0) return 0;
+        int i = g.pointers[v + 1] - g.pointers[v] < g.pointers[u + 1] - g.pointers[u]
+                ? indexOf(v, u) : indexOf(u, v);
+        return i >= 0 ? g.edgeWeights[i] : 0;
+    }
+
+    // Position of v in u's adjacency row, or -1 if there is no edge
+    int indexOf(int u, int v) {
+        int start = g.pointers[u];
+        int end = g.pointers[u + 1];
+
+        if (end - start <= LINEAR_MAX_DEGREE) {
+            for (int i = start; i < end; i++) {
+                int w = g.adjacency[i];
+                if (w == v) return i;
+                if (w > v) return -1;
+            }
+            return -1;
+        }
+
+        if (hashStart[u] >= 0) {
+            int base = hashStart[u];
+            int mask = tableSize(end - start) - 1;
+            int h = hash(v) & mask;
+            while (hashKeys[base + h] != -1) {
+                if (hashKeys[base + h] == v) return hashSlots[base + h];
+                h = (h + 1) & mask;
+            }
+            return -1;
+        }
+
+        int i = Arrays.binarySearch(g.adjacency, start, end, v);
+        return i >= 0 ? i : -1;
+    }
+
+    // Power of two with a load factor of at most 1/2
+    private static int tableSize(int degree) {
+        return Integer.highestOneBit(degree) << 2;
+    }
+
+    private static int hash(int v) {
+        int h = v * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
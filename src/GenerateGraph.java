@@ -0,0 +1,114 @@
+import java.io.File;
+
+/**
+ * Command-line generator for benchmark graphs, written straight to a graph file that
+ * PartitionCLI and the GUI can load. The same type, options and seed give the same file.
+ * Usage: java GenerateGraph gnp --vertices n [--degree d | --density p] [--seed s] --out file
+ *        java GenerateGraph grid2d --width w --height h --out file
+ *        java GenerateGraph grid3d --width w --height h --depth d --out file
+ *        java GenerateGraph rmat --scale s [--edge-factor f] [--seed s] --out file
+ *        java GenerateGraph ba --vertices n [--edges-per-vertex m] [--seed s] --out file
+ *        java GenerateGraph geometric --vertices n [--degree d] [--seed s] --out file
+ */
+public class GenerateGraph {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java GenerateGraph gnp|grid2d|grid3d|rmat|ba|geometric [--width w] [--height h]"
+                    + " [--depth d] [--scale s] [--edge-factor f] [--vertices n] [--edges-per-vertex m]"
+                    + " [--degree d] [--density p] [--seed s] --out file");
+            System.exit(2);
+        }
+
+        String type = args[0];
+        int width = 0;
+        int height = 0;
+        int depth = 0;
+        int scale = 0;
+        int edgeFactor = 16;
+        int vertices = 0;
+        int edgesPerVertex = 4;
+        double degree = 8;
+        double density = -1;    // gnp: edge probability, or -1 to derive it from --degree
+        long seed = 1;
+        String outFile = null;
+
+        for (int i = 1; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--width":
+                    width = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    height = Integer.parseInt(value);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                case "--scale":
+                    scale = Integer.parseInt(value);
+                    break;
+                case "--edge-factor":
+                    edgeFactor = Integer.parseInt(value);
+                    break;
+                case "--vertices":
+                    vertices = Integer.parseInt(value);
+                    break;
+                case "--edges-per-vertex":
+                    edgesPerVertex = Integer.parseInt(value);
+                    break;
+                case "--degree":
+                    degree = Double.parseDouble(value);
+                    break;
+                case "--density":
+                    density = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--out":
+                    outFile = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+        if (outFile == null) throw new IllegalArgumentException("--out file is required");
+
+        long start = System.nanoTime();
+        Graph g;
+        switch (type) {
+            case "gnp":
+                if (vertices < 2) throw new IllegalArgumentException("Need --vertices n, at least 2");
+                g = GraphGenerator.createRandomGraph(vertices, density >= 0 ? density : degree / (vertices - 1), seed);
+                break;
+            case "grid2d":
+                g = GraphGenerator.grid2D(width, height);
+                break;
+            case "grid3d":
+                g = GraphGenerator.grid3D(width, height, depth);
+                break;
+            case "rmat":
+                g = GraphGenerator.rmat(scale, edgeFactor, seed);
+                break;
+            case "ba":
+                g = GraphGenerator.barabasiAlbert(vertices, edgesPerVertex, seed);
+                break;
+            case "geometric":
+                // Expected degree of a point away from the border is n * pi * r^2
+                if (vertices < 1 || degree <= 0) throw new IllegalArgumentException("Need --vertices n and --degree > 0");
+                g = GraphGenerator.randomGeometric(vertices, Math.sqrt(degree / (Math.PI * vertices)), seed);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown graph type: " + type);
+        }
+        long generated = System.nanoTime();
+        GraphIO.saveGraph(new File(outFile), g);
+
+        System.out.printf("type=%s vertices=%d edges=%d max degree=%d%n",
+                type, g.numVertices, g.countEdges(), g.maxDegree());
+        System.out.printf("generate=%.1fms write=%.1fms%n",
+                (generated - start) / 1e6, (System.nanoTime() - generated) / 1e6);
+    }
+}
@@ -0,0 +1,90 @@
+// Graph data structure (CSR)
+public class Graph {
+    int numVertices;
+    int[] adjacency;      // all neighbors concatenated
+    int[] pointers;       // start index for each vertex's neighbors
+    int[] edgeWeights;    // weight of each adjacency entry, or null if every edge weighs 1
+    int[] vertexWeights;  // weight of each vertex, or null if every vertex weighs 1
+
+    int edgeWeight(int i) {
+        return edgeWeights == null ? 1 : edgeWeights[i];
+    }
+
+    int vertexWeight(int v) {
+        return vertexWeights == null ? 1 : vertexWeights[v];
+    }
+
+    int totalVertexWeight() {
+        if (vertexWeights == null) return numVertices;
+        int total = 0;
+        for (int w : vertexWeights) total += w;
+        return total;
+    }
+
+    int maxVertexWeight() {
+        if (vertexWeights == null) return numVertices > 0 ? 1 : 0;
+        int max = 0;
+        for (int w : vertexWeights) max = Math.max(max, w);
+        return max;
+    }
+
+    // Largest sum of edge weights around a single vertex
+    int maxWeightedDegree() {
+        int max = 0;
+        for (int u = 0; u < numVertices; u++) {
+            int sum = 0;
+            for (int i = pointers[u]; i < pointers[u + 1]; i++) sum += edgeWeight(i);
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    boolean rowsSorted() {
+        for (int u = 0; u < numVertices; u++) {
+            for (int i = pointers[u] + 1; i < pointers[u + 1]; i++) {
+                if (adjacency[i - 1] > adjacency[i]) return false;
+            }
+        }
+        return true;
+    }
+
+    // Sort every adjacency row in place (lookups by binary search rely on it).
+    // Edge weights move with their entries: each is packed below its neighbor id.
+    // Anyone holding positions into adjacency sees them change; new EdgeIndex(g) calls
+    // this on unsorted graphs.
+    void sortRows() {
+        long[] row = edgeWeights != null ? new long[maxDegree()] : null;
+        for (int u = 0; u < numVertices; u++) {
+            int start = pointers[u], end = pointers[u + 1];
+            if (edgeWeights == null) {
+                java.util.Arrays.sort(adjacency, start, end);
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                row[i - start] = ((long) adjacency[i] << 32) | (edgeWeights[i] & 0xFFFFFFFFL);
+            }
+            java.util.Arrays.sort(row, 0, end - start);
+            for (int i = start; i < end; i++) {
+                adjacency[i] = (int) (row[i - start] >>> 32);
+                edgeWeights[i] = (int) row[i - start];
+            }
+        }
+    }
+
+    int maxDegree() {
+        int max = 0;
+        for (int u = 0; u < numVertices; u++) max = Math.max(max, pointers[u + 1] - pointers[u]);
+        return max;
+    }
+
+    // Count undirected edges (each is stored once per endpoint)
+    int countEdges() {
+        int count = 0;
+        for (int u = 0; u < numVertices; u++) {
+            for (int i = pointers[u]; i < pointers[u + 1]; i++) {
+                if (u < adjacency[i]) count++;
+            }
+        }
+        return count;
+    }
+}
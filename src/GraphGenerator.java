@@ -0,0 +1,336 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Graph generation into CSR form: Erdos-Renyi random graphs and a corpus of benchmark
+ * shapes, all from fixed seeds and scaling to millions of vertices. The generators fill
+ * the CSR arrays directly, with no per-vertex lists. G(n, p) and R-MAT edges are generated
+ * twice from the same seed, once to count the degrees and once to fill the rows, so their
+ * edge list is never stored. Two generators keep more: Barabasi-Albert samples from the
+ * endpoints of the edges so far, so it holds the whole edge list (2 ints per edge), and the
+ * random geometric graph holds the point coordinates (2 doubles per vertex).
+ */
+public class GraphGenerator {
+
+    // Graph500 R-MAT quadrant probabilities (d = 1 - a - b - c = 0.05)
+    static final double RMAT_A = 0.57;
+    static final double RMAT_B = 0.19;
+    static final double RMAT_C = 0.19;
+
+    // Erdos-Renyi G(n, p) graph: every vertex pair is joined with probability density, then
+    // each component is linked to the one before it so the graph is connected. Equal seeds
+    // give equal graphs. Batagelj-Brandes skipping jumps straight from one edge to the next
+    // by a geometrically distributed gap over the pairs (v, w), w < v, so the cost is
+    // O(n + m) instead of one random draw per pair.
+    static Graph createRandomGraph(int numVertices, double density, long seed) {
+        int n = numVertices;
+        if (n < 1) throw new IllegalArgumentException("Need at least one vertex");
+        int[] pointers = new int[n + 1];
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++) parent[v] = v;
+
+        // Counting pass: row sizes, and components with a union-find
+        long entries = 2 * sampleGnp(n, density, seed, pointers, null, parent);
+
+        // A vertex not yet connected to vertex 0 is the first of its component; link it to
+        // the vertex before it, which is. No recursion, so this works at any size.
+        int[] links = new int[0];
+        int linkCount = 0;
+        for (int v = 1; v < n; v++) {
+            if (find(parent, v) == find(parent, 0)) continue;
+            if (linkCount == links.length) links = Arrays.copyOf(links, Math.max(16, 2 * linkCount));
+            links[linkCount++] = v;
+            parent[find(parent, v)] = find(parent, 0);
+            addEdge(pointers, null, v - 1, v, false);
+            entries += 2;
+        }
+        if (entries > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many edges: " + entries / 2);
+
+        // Filling pass: the same seed draws the same edges again
+        startRows(pointers);
+        int[] adjacency = new int[(int) entries];
+        sampleGnp(n, density, seed, pointers, adjacency, null);
+        for (int i = 0; i < linkCount; i++) addEdge(pointers, adjacency, links[i] - 1, links[i], true);
+        System.arraycopy(pointers, 0, pointers, 1, n);
+        pointers[0] = 0;
+
+        Graph g = new Graph();
+        g.numVertices = n;
+        g.pointers = pointers;
+        g.adjacency = adjacency;
+        // Sampled rows come out sorted (smaller neighbors while v is drawn, larger ones after);
+        // only the links can be out of place
+        if (linkCount > 0) g.sortRows();
+        return g;
+    }
+
+    // Draw the G(n, p) edges of seed in order. Without adjacency they are counted into
+    // pointers (and joined in parent), with it they are filled in (see addEdge).
+    // Returns the number of edges.
+    private static long sampleGnp(int n, double p, long seed, int[] pointers, int[] adjacency, int[] parent) {
+        if (p <= 0) return 0;
+        SplittableRandom rand = new SplittableRandom(seed);
+        double logQ = Math.log(1 - p);   // -Infinity for p = 1: every gap is 0
+        long edges = 0;
+        int v = 1;
+        long w = -1;
+        while (v < n) {
+            w += 1 + (long) Math.floor(Math.log(1 - rand.nextDouble()) / logQ);
+            while (w >= v && v < n) {
+                w -= v;
+                v++;
+            }
+            if (v < n) {
+                addEdge(pointers, adjacency, v, (int) w, adjacency != null);
+                if (parent != null) parent[find(parent, v)] = find(parent, (int) w);
+                edges++;
+            }
+        }
+        return edges;
+    }
+
+    // Root of v's set, halving the path on the way
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    // width x height mesh, each vertex joined to its 4 axis neighbors; vertex (x, y) is y * width + x
+    static Graph grid2D(int width, int height) {
+        return grid3D(width, height, 1);
+    }
+
+    // nx x ny x nz mesh with 6 axis neighbors per vertex; vertex (x, y, z) is (z * ny + y) * nx + x.
+    // Rows come out sorted: the neighbors are visited in increasing id order.
+    static Graph grid3D(int nx, int ny, int nz) {
+        if (nx < 1 || ny < 1 || nz < 1) throw new IllegalArgumentException("Grid sides must be at least 1");
+        long count = (long) nx * ny * nz;
+        long entries = 2 * ((long) (nx - 1) * ny * nz + (long) nx * (ny - 1) * nz + (long) nx * ny * (nz - 1));
+        if (count > Integer.MAX_VALUE - 8 || entries > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Grid too large: " + count + " vertices, " + entries / 2 + " edges");
+        }
+        int n = (int) count;
+        int plane = nx * ny;
+        Graph g = new Graph();
+        g.numVertices = n;
+        g.pointers = new int[n + 1];
+        g.adjacency = new int[(int) entries];
+        int fill = 0;
+        for (int z = 0; z < nz; z++) {
+            for (int y = 0; y < ny; y++) {
+                for (int x = 0; x < nx; x++) {
+                    int v = (z * ny + y) * nx + x;
+                    g.pointers[v] = fill;
+                    if (z > 0) g.adjacency[fill++] = v - plane;
+                    if (y > 0) g.adjacency[fill++] = v - nx;
+                    if (x > 0) g.adjacency[fill++] = v - 1;
+                    if (x < nx - 1) g.adjacency[fill++] = v + 1;
+                    if (y < ny - 1) g.adjacency[fill++] = v + nx;
+                    if (z < nz - 1) g.adjacency[fill++] = v + plane;
+                }
+            }
+        }
+        g.pointers[n] = fill;
+        return g;
+    }
+
+    // R-MAT (recursive matrix) graph on 2^scale vertices from edgeFactor * 2^scale edge
+    // samples: each sample picks one quadrant of the adjacency matrix per bit, with the
+    // Graph500 probabilities, which gives the skewed degrees and community structure of
+    // web and social graphs. Vertex ids are then shuffled, so that degree does not follow
+    // the id, and self-loops and repeated samples are dropped.
+    static Graph rmat(int scale, int edgeFactor, long seed) {
+        if (scale < 1 || scale > 30) throw new IllegalArgumentException("Scale must be 1-30");
+        int n = 1 << scale;
+        long samples = (long) edgeFactor * n;
+        if (edgeFactor < 1 || 2 * samples > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Edge factor must be 1-" + (Integer.MAX_VALUE / 2 / n));
+        }
+        SplittableRandom rand = new SplittableRandom(seed);
+        int[] label = PartitionEngine.randomOrder(n, rand);
+        long edgeSeed = rand.nextLong();
+
+        int[] pointers = new int[n + 1];
+        int[] adjacency = new int[(int) (2 * samples)];
+        for (int fillPass = 0; fillPass < 2; fillPass++) {
+            SplittableRandom edges = new SplittableRandom(edgeSeed);
+            for (long e = 0; e < samples; e++) {
+                int u = 0, v = 0;
+                for (int bit = 0; bit < scale; bit++) {
+                    // Quadrant 0-3 = a, b, c, d: its high bit goes to u, its low bit to v.
+                    // Counting comparisons avoids a branch the CPU could only guess.
+                    double r = edges.nextDouble();
+                    int quadrant = (r >= RMAT_A ? 1 : 0) + (r >= RMAT_A + RMAT_B ? 1 : 0)
+                            + (r >= RMAT_A + RMAT_B + RMAT_C ? 1 : 0);
+                    u = (u << 1) | (quadrant >> 1);
+                    v = (v << 1) | (quadrant & 1);
+                }
+                addEdge(pointers, adjacency, label[u], label[v], fillPass == 1);
+            }
+            if (fillPass == 0) startRows(pointers);
+        }
+        return compact(n, pointers, adjacency);
+    }
+
+    // Barabasi-Albert preferential attachment: vertices arrive one by one and each joins
+    // edgesPerVertex distinct earlier vertices, picked with probability proportional to
+    // their degree. Picking a uniform entry of the list of all edge endpoints so far does
+    // exactly that in O(1); the first edgesPerVertex vertices are only joined to vertex
+    // edgesPerVertex. Gives a power-law degree distribution with one giant hub-rich component.
+    // The endpoint list is the edge list, so this generator stores it alongside the CSR arrays.
+    static Graph barabasiAlbert(int n, int edgesPerVertex, long seed) {
+        int m = edgesPerVertex;
+        if (m < 1 || n <= m) throw new IllegalArgumentException("Need at least 1 edge per vertex and more vertices than that");
+        long edgeCount = (long) (n - m) * m;
+        if (2 * edgeCount > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many edges: " + edgeCount);
+        SplittableRandom rand = new SplittableRandom(seed);
+
+        // ends[2e] and ends[2e + 1] are the endpoints of edge e
+        int[] ends = new int[(int) (2 * edgeCount)];
+        int size = 0;
+        int[] chosen = new int[m];
+        for (int v = m; v < n; v++) {
+            for (int j = 0; j < m; j++) {
+                int t;
+                if (v == m) {
+                    t = j;
+                } else {
+                    do {
+                        t = ends[rand.nextInt(size)];
+                    } while (contains(chosen, j, t));
+                }
+                chosen[j] = t;
+            }
+            for (int j = 0; j < m; j++) {
+                ends[size++] = v;
+                ends[size++] = chosen[j];
+            }
+        }
+
+        int[] pointers = new int[n + 1];
+        int[] adjacency = new int[size];
+        for (int fillPass = 0; fillPass < 2; fillPass++) {
+            for (int e = 0; e < size; e += 2) addEdge(pointers, adjacency, ends[e], ends[e + 1], fillPass == 1);
+            if (fillPass == 0) startRows(pointers);
+        }
+        return compact(n, pointers, adjacency);
+    }
+
+    // Random geometric graph: n points uniform in the unit square, joined when closer than
+    // radius (meshes and sensor networks look like this). Points are bucketed into square
+    // cells of side >= radius, so each point only compares against the 3 x 3 cells around it.
+    static Graph randomGeometric(int n, double radius, long seed) {
+        if (n < 1 || radius <= 0) throw new IllegalArgumentException("Need at least one vertex and a positive radius");
+        SplittableRandom rand = new SplittableRandom(seed);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int v = 0; v < n; v++) {
+            x[v] = rand.nextDouble();
+            y[v] = rand.nextDouble();
+        }
+
+        // Cells sorted with a counting sort; at most about n cells, however small the radius
+        int side = (int) Math.max(1, Math.min(1 / radius, Math.sqrt(n) + 1));
+        int[] cellStart = new int[side * side + 1];
+        int[] cellOf = new int[n];
+        for (int v = 0; v < n; v++) {
+            cellOf[v] = Math.min(side - 1, (int) (y[v] * side)) * side + Math.min(side - 1, (int) (x[v] * side));
+            cellStart[cellOf[v] + 1]++;
+        }
+        for (int c = 0; c < side * side; c++) cellStart[c + 1] += cellStart[c];
+        int[] byCell = new int[n];
+        int[] fill = Arrays.copyOf(cellStart, side * side);
+        for (int v = 0; v < n; v++) byCell[fill[cellOf[v]]++] = v;
+
+        // First sweep counts each row, the second fills it
+        double r2 = radius * radius;
+        int[] pointers = new int[n + 1];
+        int[] adjacency = null;
+        for (int fillPass = 0; fillPass < 2; fillPass++) {
+            long entries = 0;
+            for (int v = 0; v < n; v++) {
+                int cx = cellOf[v] % side, cy = cellOf[v] / side;
+                int start = fillPass == 1 ? pointers[v] : 0;
+                int degree = 0;
+                for (int dy = Math.max(0, cy - 1); dy <= Math.min(side - 1, cy + 1); dy++) {
+                    for (int dx = Math.max(0, cx - 1); dx <= Math.min(side - 1, cx + 1); dx++) {
+                        int c = dy * side + dx;
+                        for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                            int u = byCell[i];
+                            double ddx = x[u] - x[v], ddy = y[u] - y[v];
+                            if (u == v || ddx * ddx + ddy * ddy >= r2) continue;
+                            if (fillPass == 1) adjacency[start + degree] = u;
+                            degree++;
+                        }
+                    }
+                }
+                if (fillPass == 0) pointers[v + 1] = degree;
+                entries += degree;
+            }
+            if (fillPass == 0) {
+                if (entries > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many edges: " + entries / 2);
+                for (int v = 0; v < n; v++) pointers[v + 1] += pointers[v];
+                adjacency = new int[(int) entries];
+            }
+        }
+        Graph g = new Graph();
+        g.numVertices = n;
+        g.pointers = pointers;
+        g.adjacency = adjacency;
+        g.sortRows();
+        return g;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    // Record edge u-v in both rows. Counting pass (fill false): pointers[x + 1] counts row x.
+    // Filling pass: pointers[x] is the next free slot of row x (see startRows).
+    private static void addEdge(int[] pointers, int[] adjacency, int u, int v, boolean fill) {
+        if (!fill) {
+            pointers[u + 1]++;
+            pointers[v + 1]++;
+        } else {
+            adjacency[pointers[u]++] = v;
+            adjacency[pointers[v]++] = u;
+        }
+    }
+
+    // Turn the row counts into row starts
+    private static void startRows(int[] pointers) {
+        for (int v = 1; v < pointers.length; v++) pointers[v] += pointers[v - 1];
+    }
+
+    // After the filling pass pointers[v] is the end of row v (= start of row v + 1). Sort
+    // every row, drop self-loops and repeated neighbors, and close the gaps in place.
+    private static Graph compact(int n, int[] pointers, int[] adjacency) {
+        int write = 0;
+        int start = 0;
+        for (int v = 0; v < n; v++) {
+            int end = pointers[v];
+            Arrays.sort(adjacency, start, end);
+            int rowStart = write;
+            for (int i = start; i < end; i++) {
+                int u = adjacency[i];
+                if (u == v || (write > rowStart && adjacency[write - 1] == u)) continue;
+                adjacency[write++] = u;
+            }
+            pointers[v] = rowStart;
+            start = end;
+        }
+        pointers[n] = write;
+
+        Graph g = new Graph();
+        g.numVertices = n;
+        g.pointers = pointers;
+        g.adjacency = write == adjacency.length ? adjacency : Arrays.copyOf(adjacency, write);
+        return g;
+    }
+}
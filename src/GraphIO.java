@@ -0,0 +1,145 @@
+import java.io.*;
+
+// Reading and writing graph files, and writing partition results
+public class GraphIO {
+
+    // The file is read number by number (GraphTokenizer), so no line is ever held as text
+    static Graph loadGraphFile(String path) throws IOException {
+        Graph g = new Graph();
+        try (GraphTokenizer in = new GraphTokenizer(path)) {
+            g.numVertices = in.nextInt();
+            if (g.numVertices < 0) throw new IOException("Invalid vertex count: " + g.numVertices);
+            in.nextLine();
+            g.adjacency = in.readInts(-1, "adjacency");
+            in.nextLine();
+            g.pointers = in.readInts(g.numVertices + 1, "pointer");
+
+            // Optional: edge weights parallel to the adjacency line, then vertex weights.
+            // A blank edge-weight line keeps edges unweighted.
+            if (in.nextLine()) {
+                if (in.hasNext()) g.edgeWeights = readWeights(in, g.adjacency.length, "edge");
+                if (in.nextLine() && in.hasNext()) {
+                    g.vertexWeights = readWeights(in, g.numVertices, "vertex");
+                }
+            }
+        }
+
+        if (g.pointers[0] != 0 || g.pointers[g.numVertices] != g.adjacency.length) {
+            throw new IOException("Pointers do not match the adjacency line");
+        }
+        long edgeTotal = g.adjacency.length;
+        if (g.edgeWeights != null) {
+            edgeTotal = 0;
+            for (int w : g.edgeWeights) edgeTotal += w;
+        }
+        long vertexTotal = g.numVertices;
+        if (g.vertexWeights != null) {
+            vertexTotal = 0;
+            for (int w : g.vertexWeights) vertexTotal += w;
+        }
+        checkTotals(edgeTotal, vertexTotal);
+        if (!g.rowsSorted()) {
+            g.sortRows();
+        }
+        if (g.edgeWeights != null) {
+            // Both directions of an edge must carry the same weight
+            EdgeIndex edges = new EdgeIndex(g);
+            for (int u = 0; u < g.numVertices; u++) {
+                for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                    int back = edges.indexOf(g.adjacency[i], u);
+                    if (back >= 0 && g.edgeWeights[back] != g.edgeWeights[i]) {
+                        throw new IOException("Edge " + u + "-" + g.adjacency[i] + " has different weights per direction");
+                    }
+                }
+            }
+        }
+        return g;
+    }
+
+    // Cut weights, part weights and gains are ints. Summed over the adjacency entries (both
+    // directions of every edge), the edge weights bound any cut or KL gain; the vertex
+    // weights bound any part. Graphs whose totals do not fit are rejected up front.
+    static void checkTotals(long edgeEntryWeight, long vertexWeight) throws IOException {
+        if (edgeEntryWeight > Integer.MAX_VALUE) {
+            throw new IOException("Total edge weight " + edgeEntryWeight / 2 + " too large, at most "
+                    + Integer.MAX_VALUE / 2 + " supported");
+        }
+        if (vertexWeight > Integer.MAX_VALUE) {
+            throw new IOException("Total vertex weight " + vertexWeight + " too large, at most "
+                    + Integer.MAX_VALUE + " supported");
+        }
+    }
+
+    static int[] readWeights(GraphTokenizer in, int expected, String kind) throws IOException {
+        int[] weights = in.readInts(expected, kind + " weight");
+        for (int w : weights) {
+            if (w < 0) throw new IOException("Negative " + kind + " weight: " + w);
+        }
+        return weights;
+    }
+
+    // Write g in the format loadGraphFile reads: vertex count, adjacency, pointers, then the
+    // edge weights (blank if only the vertices are weighted) and vertex weights if present
+    static void saveGraph(File file, Graph g) throws IOException {
+        PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file), 1 << 16));
+        pw.println(g.numVertices);
+        printLine(pw, g.adjacency);
+        printLine(pw, g.pointers);
+        if (g.edgeWeights != null || g.vertexWeights != null) {
+            if (g.edgeWeights != null) printLine(pw, g.edgeWeights);
+            else pw.println();
+            if (g.vertexWeights != null) printLine(pw, g.vertexWeights);
+        }
+        pw.close();
+        if (pw.checkError()) throw new IOException("Writing " + file + " failed");
+    }
+
+    private static void printLine(PrintWriter pw, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) pw.print(';');
+            pw.print(values[i]);
+        }
+        pw.println();
+    }
+
+    // Write parts as "<size> <vertex ids...>" lines after the part count and cut weight.
+    // Vertex-weighted graphs get a last line with the weight of each part.
+    static void savePartition(File file, Graph g, int[] map, int numParts, int cuts) throws IOException {
+        savePartition(file, g.vertexWeights, map, numParts, cuts);
+    }
+
+    // Same, for a partition computed without a Graph (vertexWeights is null if unweighted)
+    static void savePartition(File file, int[] vertexWeights, int[] map, int numParts, int cuts)
+            throws IOException {
+        // Vertex ids grouped by part with a counting sort, so huge maps need no boxed lists
+        int[] start = new int[numParts + 1];
+        for (int p : map) start[p + 1]++;
+        for (int p = 0; p < numParts; p++) start[p + 1] += start[p];
+        int[] byPart = new int[map.length];
+        int[] fill = java.util.Arrays.copyOf(start, numParts);
+        for (int v = 0; v < map.length; v++) byPart[fill[map[v]]++] = v;
+
+        PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        pw.println(numParts);
+        pw.println(cuts);
+
+        for (int p = 0; p < numParts; p++) {
+            pw.print(start[p + 1] - start[p]);
+            for (int i = start[p]; i < start[p + 1]; i++) {
+                pw.print(' ');
+                pw.print(byPart[i]);
+            }
+            pw.println();
+        }
+        if (vertexWeights != null) {
+            int[] weights = new int[numParts];
+            for (int v = 0; v < map.length; v++) weights[map[v]] += vertexWeights[v];
+            for (int p = 0; p < numParts; p++) {
+                pw.print(p == 0 ? "" : " ");
+                pw.print(weights[p]);
+            }
+            pw.println();
+        }
+        pw.close();
+    }
+}
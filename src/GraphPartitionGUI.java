@@ -3,9 +3,10 @@ import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Graph Partitioning Visualizer using Kernighan-Lin Algorithm
@@ -14,12 +15,14 @@ import java.util.List;
 public class GraphPartitionGUI extends JFrame {
 
     private static final int NODE_SIZE = 20;
-    private static final int MAX_PASSES = 10;
 
     // GUI components
     private GraphPanel beforePanel;
     private GraphPanel afterPanel;
+    private JButton loadButton;
+    private JButton randomButton;
     private JButton partitionButton;
+    private JButton cancelButton;
     private JButton saveButton;
     private JButton stepButton;
     private JButton playButton;
@@ -29,47 +32,36 @@ public class GraphPartitionGUI extends JFrame {
     private JTextArea logArea;
     private JSlider speedSlider;
 
-    // Data
-    private Graph graph;
-    private Partition[] partitions;
-    private List<AlgorithmStep> steps;
-    private int currentStep;
-    private javax.swing.Timer animationTimer;
-    private boolean isPlaying;
-
-    // Graph data structure
-    static class Graph {
-        int numVertices;
-        int[] adjacency;      // all neighbors concatenated
-        int[] pointers;       // start index for each vertex's neighbors
-    }
+    // How the parts are produced: all pairs at once, coarsen first, or by repeated bisection
+    private enum Mode {
+        FLAT("Flat"),
+        MULTILEVEL("Multilevel"),
+        RECURSIVE("Recursive bisection");
 
-    static class Partition {
-        int[] vertices;
-    }
+        private final String label;
 
-    // Single step in the algorithm
-    static class AlgorithmStep {
-        int[] partitionMap;
-        int cutEdges;
-        String description;
-        int vertex1;  // highlighted vertex
-        int vertex2;  // highlighted vertex
-
-        AlgorithmStep(int[] map, int cuts, String desc) {
-            this.partitionMap = map.clone();
-            this.cutEdges = cuts;
-            this.description = desc;
-            this.vertex1 = -1;
-            this.vertex2 = -1;
+        Mode(String label) {
+            this.label = label;
         }
 
-        void highlight(int v1, int v2) {
-            this.vertex1 = v1;
-            this.vertex2 = v2;
+        public String toString() {
+            return label;
         }
     }
 
+    // Data
+    private Graph graph;
+    private PartitionResult result;
+    private StepTimeline steps;
+    private int currentStep;
+    private javax.swing.Timer animationTimer;
+    private boolean isPlaying;
+
+    // Background run: the worker computes, drainTimer moves its queued steps into steps
+    private SwingWorker<?, ?> worker;
+    private javax.swing.Timer drainTimer;
+    private Runnable cancelAction;
+
     // Panel for drawing the graph
     class GraphPanel extends JPanel {
         private Graph g;
@@ -188,9 +180,18 @@ public class GraphPartitionGUI extends JFrame {
         JPanel controls = new JPanel(new FlowLayout());
         JTextField partsField = new JTextField("2", 3);
         JTextField marginField = new JTextField("10.0", 4);
-        JButton loadBtn = new JButton("Load File");
-        JButton randomBtn = new JButton("Random Graph");
+        JComboBox<PartitionEngine.Refinement> methodBox =
+                new JComboBox<>(PartitionEngine.Refinement.values());
+        JComboBox<PartitionEngine.InitialPartition> initialBox =
+                new JComboBox<>(PartitionEngine.InitialPartition.values());
+        JComboBox<Mode> modeBox = new JComboBox<>(Mode.values());
+        JTextField startsField = new JTextField("1", 3);
+        JTextField timeLimitField = new JTextField("0", 3);
+        JTextField seedField = new JTextField("", 6);
+        loadButton = new JButton("Load File");
+        randomButton = new JButton("Random Graph");
         partitionButton = new JButton("Start");
+        cancelButton = new JButton("Cancel");
         saveButton = new JButton("Save");
         stepButton = new JButton("Step");
         playButton = new JButton("Play");
@@ -204,9 +205,22 @@ public class GraphPartitionGUI extends JFrame {
         controls.add(partsField);
         controls.add(new JLabel("Margin(%):"));
         controls.add(marginField);
-        controls.add(loadBtn);
-        controls.add(randomBtn);
+        controls.add(new JLabel("Method:"));
+        controls.add(methodBox);
+        controls.add(new JLabel("Initial:"));
+        controls.add(initialBox);
+        controls.add(new JLabel("Mode:"));
+        controls.add(modeBox);
+        controls.add(new JLabel("Starts:"));
+        controls.add(startsField);
+        controls.add(new JLabel("Time limit(s):"));
+        controls.add(timeLimitField);
+        controls.add(new JLabel("Seed:"));
+        controls.add(seedField);
+        controls.add(loadButton);
+        controls.add(randomButton);
         controls.add(partitionButton);
+        controls.add(cancelButton);
         controls.add(new JSeparator(SwingConstants.VERTICAL));
         controls.add(resetButton);
         controls.add(stepButton);
@@ -240,25 +254,30 @@ public class GraphPartitionGUI extends JFrame {
 
         // Initial state
         partitionButton.setEnabled(false);
+        cancelButton.setEnabled(false);
         saveButton.setEnabled(false);
         stepButton.setEnabled(false);
         playButton.setEnabled(false);
         resetButton.setEnabled(false);
 
         // Actions
-        loadBtn.addActionListener(e -> loadGraph());
-        randomBtn.addActionListener(e -> generateRandomGraph());
-        partitionButton.addActionListener(e -> startAlgorithm(partsField.getText(), marginField.getText()));
+        loadButton.addActionListener(e -> loadGraph());
+        randomButton.addActionListener(e -> generateRandomGraph());
+        partitionButton.addActionListener(e -> startAlgorithm(partsField.getText(), marginField.getText(),
+                startsField.getText(), timeLimitField.getText(), seedField.getText(),
+                (PartitionEngine.Refinement) methodBox.getSelectedItem(),
+                (PartitionEngine.InitialPartition) initialBox.getSelectedItem(), (Mode) modeBox.getSelectedItem()));
+        cancelButton.addActionListener(e -> cancelAlgorithm());
         stepButton.addActionListener(e -> nextStep());
         playButton.addActionListener(e -> togglePlay());
         resetButton.addActionListener(e -> resetView());
         saveButton.addActionListener(e -> saveResult());
 
-        // Animation timer
+        // Animation timer; at the last step of a run still in progress it waits for more
         animationTimer = new javax.swing.Timer(500, e -> {
             if (currentStep < steps.size() - 1) {
                 nextStep();
-            } else {
+            } else if (worker == null) {
                 stopPlay();
             }
         });
@@ -269,7 +288,7 @@ public class GraphPartitionGUI extends JFrame {
         JFileChooser fc = new JFileChooser(".");
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                graph = loadGraphFile(fc.getSelectedFile().getPath());
+                graph = GraphIO.loadGraphFile(fc.getSelectedFile().getPath());
                 initializeGraphView();
                 JOptionPane.showMessageDialog(this,
                         "Loaded graph with " + graph.numVertices + " vertices");
@@ -282,9 +301,10 @@ public class GraphPartitionGUI extends JFrame {
 
     // Generate random graph
     private void generateRandomGraph() {
-        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        JPanel panel = new JPanel(new GridLayout(4, 2, 5, 5));
         JTextField verticesField = new JTextField("10", 5);
         JTextField densityField = new JTextField("0.3", 5);
+        JTextField seedField = new JTextField("", 5);
 
         panel.add(new JLabel("Number of vertices:"));
         panel.add(verticesField);
@@ -292,6 +312,8 @@ public class GraphPartitionGUI extends JFrame {
         panel.add(densityField);
         panel.add(new JLabel("Higher = more edges"));
         panel.add(new JLabel(""));
+        panel.add(new JLabel("Seed (blank = random):"));
+        panel.add(seedField);
 
         int result = JOptionPane.showConfirmDialog(this, panel,
                 "Generate Random Graph", JOptionPane.OK_CANCEL_OPTION);
@@ -300,19 +322,20 @@ public class GraphPartitionGUI extends JFrame {
             try {
                 int n = Integer.parseInt(verticesField.getText());
                 double density = Double.parseDouble(densityField.getText());
+                long seed = parseSeed(seedField.getText());
 
-                if (n < 3 || n > 100) {
-                    throw new Exception("Vertices must be between 3 and 100");
+                if (n < 3 || n > 1000) {
+                    throw new Exception("Vertices must be between 3 and 1000");
                 }
                 if (density < 0 || density > 1) {
                     throw new Exception("Density must be between 0 and 1");
                 }
 
-                graph = createRandomGraph(n, density);
+                graph = GraphGenerator.createRandomGraph(n, density, seed);
                 initializeGraphView();
                 JOptionPane.showMessageDialog(this,
-                        String.format("Generated random graph:\n%d vertices, %d edges",
-                                graph.numVertices, countTotalEdges(graph)));
+                        String.format("Generated random graph:\n%d vertices, %d edges\nSeed: %d",
+                                graph.numVertices, graph.countEdges(), seed));
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(),
                         "Error", JOptionPane.ERROR_MESSAGE);
@@ -320,6 +343,12 @@ public class GraphPartitionGUI extends JFrame {
         }
     }
 
+    // A seed typed by the user, or a fresh one if the field is blank. Either way it is shown,
+    // so that any run can be repeated.
+    private static long parseSeed(String text) {
+        return text.trim().isEmpty() ? new SplittableRandom().nextLong() : Long.parseLong(text.trim());
+    }
+
     // Initialize graph view after loading/generating
     private void initializeGraphView() {
         beforePanel.setGraph(graph);
@@ -333,329 +362,163 @@ public class GraphPartitionGUI extends JFrame {
         stepLabel.setText("Step: -");
         logArea.setText("");
         steps = null;
+        result = null;
     }
 
-    // Create a random graph with given parameters
-    private Graph createRandomGraph(int numVertices, double density) {
-        Graph g = new Graph();
-        g.numVertices = numVertices;
-
-        // Build adjacency list
-        List<List<Integer>> adjList = new ArrayList<>();
-        for (int i = 0; i < numVertices; i++) {
-            adjList.add(new ArrayList<>());
-        }
-
-        // Add random edges
-        java.util.Random rand = new java.util.Random();
-        for (int i = 0; i < numVertices; i++) {
-            for (int j = i + 1; j < numVertices; j++) {
-                if (rand.nextDouble() < density) {
-                    adjList.get(i).add(j);
-                    adjList.get(j).add(i);
-                }
-            }
-        }
-
-        // Ensure graph is connected
-        ensureConnected(adjList, numVertices);
-
-        // Convert to CSR format
-        int totalEdges = 0;
-        for (List<Integer> neighbors : adjList) {
-            totalEdges += neighbors.size();
-        }
-
-        g.adjacency = new int[totalEdges];
-        g.pointers = new int[numVertices + 1];
-
-        int idx = 0;
-        for (int i = 0; i < numVertices; i++) {
-            g.pointers[i] = idx;
-            Collections.sort(adjList.get(i));
-            for (int neighbor : adjList.get(i)) {
-                g.adjacency[idx++] = neighbor;
-            }
-        }
-        g.pointers[numVertices] = idx;
-
-        return g;
-    }
-
-    // Make sure graph is connected
-    private void ensureConnected(List<List<Integer>> adjList, int n) {
-        boolean[] visited = new boolean[n];
-        dfs(0, adjList, visited);
-
-        // Connect unvisited components
-        for (int i = 1; i < n; i++) {
-            if (!visited[i]) {
-                // Connect to previous vertex
-                adjList.get(i - 1).add(i);
-                adjList.get(i).add(i - 1);
-                dfs(i, adjList, visited);
-            }
-        }
-    }
-
-    // DFS for connectivity check
-    private void dfs(int v, List<List<Integer>> adjList, boolean[] visited) {
-        visited[v] = true;
-        for (int neighbor : adjList.get(v)) {
-            if (!visited[neighbor]) {
-                dfs(neighbor, adjList, visited);
-            }
-        }
-    }
-
-    // Count total edges in graph
-    private int countTotalEdges(Graph g) {
-        int count = 0;
-        for (int u = 0; u < g.numVertices; u++) {
-            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
-                int v = g.adjacency[i];
-                if (u < v) count++;
-            }
-        }
-        return count;
-    }
-
-    private Graph loadGraphFile(String path) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(path));
-        Graph g = new Graph();
-        g.numVertices = Integer.parseInt(br.readLine().trim());
-
-        String[] adjTokens = br.readLine().trim().split(";");
-        g.adjacency = new int[adjTokens.length];
-        for (int i = 0; i < adjTokens.length; i++) {
-            g.adjacency[i] = Integer.parseInt(adjTokens[i]);
-        }
-
-        String[] ptrTokens = br.readLine().trim().split(";");
-        g.pointers = new int[ptrTokens.length];
-        for (int i = 0; i < ptrTokens.length; i++) {
-            g.pointers[i] = Integer.parseInt(ptrTokens[i]);
-        }
-
-        br.close();
-
-        if (g.pointers.length != g.numVertices + 1) {
-            throw new IOException("Invalid pointer count");
-        }
-        return g;
-    }
-
-    // Start the algorithm
-    private void startAlgorithm(String partsStr, String marginStr) {
+    // Start the algorithm on a background thread; steps show up as the engine produces them
+    private void startAlgorithm(String partsStr, String marginStr, String startsStr, String timeLimitStr,
+                                String seedStr, PartitionEngine.Refinement method,
+                                PartitionEngine.InitialPartition initial, Mode mode) {
         try {
             int numParts = Integer.parseInt(partsStr);
             float margin = Float.parseFloat(marginStr);
+            int starts = Integer.parseInt(startsStr);
+            long timeLimit = Math.round(Double.parseDouble(timeLimitStr) * 1000);   // 0 = none
+            long seed = parseSeed(seedStr);
 
             if (numParts < 2 || numParts > graph.numVertices) {
                 throw new Exception("Parts must be 2-" + graph.numVertices);
             }
-
-            logArea.setText("Starting Kernighan-Lin...\n");
-            steps = runAlgorithm(graph, numParts, margin);
-            currentStep = 0;
-
-            stepButton.setEnabled(true);
-            playButton.setEnabled(true);
-            resetButton.setEnabled(true);
-            saveButton.setEnabled(true);
-
-            displayStep();
-            logArea.append("Generated " + steps.size() + " steps\n");
-
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    // Run KL algorithm with step recording
-    private List<AlgorithmStep> runAlgorithm(Graph g, int numParts, float margin) {
-        List<AlgorithmStep> stepList = new ArrayList<>();
-
-        // Initial partition
-        int[] map = randomPartition(g.numVertices, numParts);
-        int cuts = countCuts(g, map);
-        stepList.add(new AlgorithmStep(map, cuts, "Initial random partition"));
-
-        // KL refinement
-        boolean improved = true;
-        int pass = 0;
-
-        while (improved && pass < MAX_PASSES) {
-            improved = false;
-            pass++;
-            stepList.add(new AlgorithmStep(map, cuts, "\n=== Pass " + pass + " ==="));
-
-            for (int i = 0; i < numParts; i++) {
-                for (int j = i + 1; j < numParts; j++) {
-                    int[] newMap = refinePair(g, map, i, j, stepList, pass);
-                    if (newMap != null) {
-                        improved = true;
-                        map = newMap;
-                        cuts = countCuts(g, map);
-                    }
-                }
+            if (starts < 1) {
+                throw new Exception("Starts must be at least 1");
             }
-
-            if (!improved) {
-                stepList.add(new AlgorithmStep(map, cuts, "No improvement in pass " + pass));
+            if (timeLimit < 0) {
+                throw new Exception("Time limit must not be negative");
             }
-        }
-
-        stepList.add(new AlgorithmStep(map, cuts, "\n=== Final: " + cuts + " cut edges ==="));
-        return stepList;
-    }
-
-    // Refine a pair of partitions
-    private int[] refinePair(Graph g, int[] map, int p1, int p2,
-                             List<AlgorithmStep> stepList, int pass) {
-        int[] working = map.clone();
-        List<SwapInfo> swaps = new ArrayList<>();
-
-        List<Integer> verts1 = new ArrayList<>();
-        List<Integer> verts2 = new ArrayList<>();
-        for (int v = 0; v < g.numVertices; v++) {
-            if (map[v] == p1) verts1.add(v);
-            if (map[v] == p2) verts2.add(v);
-        }
-
-        boolean[] locked = new boolean[g.numVertices];
-        int iters = Math.min(verts1.size(), verts2.size());
-
-        // Generate all swaps
-        for (int iter = 0; iter < iters; iter++) {
-            int[] gains = computeGains(g, working, p1, p2, locked);
-
-            int bestV1 = -1, bestV2 = -1, maxGain = Integer.MIN_VALUE;
-
-            for (int v1 : verts1) {
-                if (locked[v1]) continue;
-                for (int v2 : verts2) {
-                    if (locked[v2]) continue;
-
-                    int cost = hasEdge(g, v1, v2) ? 2 : 0;
-                    int gain = gains[v1] + gains[v2] - cost;
-
-                    if (gain > maxGain) {
-                        maxGain = gain;
-                        bestV1 = v1;
-                        bestV2 = v2;
-                    }
-                }
+            if (starts > 1 && mode != Mode.FLAT) {
+                throw new Exception("Multi-start runs flat refinement; choose the Flat mode");
             }
 
-            if (bestV1 != -1) {
-                working[bestV1] = p2;
-                working[bestV2] = p1;
-                locked[bestV1] = true;
-                locked[bestV2] = true;
-
-                int cuts = countCuts(g, working);
-                swaps.add(new SwapInfo(working.clone(), bestV1, bestV2, maxGain, cuts, iter));
-            } else {
-                break;
+            if (starts > 1) {
+                startMultiStart(numParts, margin, starts, timeLimit, seed, method, initial);
+                return;
             }
-        }
 
-        // Find best prefix (classic KL)
-        int bestIdx = -1;
-        int bestCuts = countCuts(g, map);
+            logArea.setText("Starting " + method + " (" + mode + ", seed " + seed + ")...\n");
+            Graph g = graph;
+            StepQueue queue = new StepQueue();
+            PartitionEngine engine = new PartitionEngine();
+            engine.setRefinement(method);
+            engine.setInitialPartition(initial);
+            engine.setListener(queue);
+            steps = new StepTimeline();
+            runInBackground(() -> {
+                        engine.setTimeBudget(timeLimit);
+                        return mode == Mode.MULTILEVEL
+                                ? new MultilevelPartitioner(engine).run(g, numParts, margin, seed)
+                                : mode == Mode.RECURSIVE
+                                ? new RecursiveBisection(engine).run(g, numParts, margin, seed)
+                                : engine.run(g, numParts, margin, seed);
+                    },
+                    queue, engine::cancel, r -> {
+                        result = r;
+                        if (engine.stoppedAtDeadline()) logArea.append("Time limit reached, keeping the best partition so far\n");
+                        logArea.append("Generated " + steps.size() + " steps\n");
+                    });
 
-        for (int i = 0; i < swaps.size(); i++) {
-            if (swaps.get(i).cuts < bestCuts) {
-                bestCuts = swaps.get(i).cuts;
-                bestIdx = i;
-            }
-        }
-
-        // Record steps
-        if (bestIdx >= 0) {
-            for (int i = 0; i <= bestIdx; i++) {
-                SwapInfo s = swaps.get(i);
-                AlgorithmStep step = new AlgorithmStep(s.map, s.cuts,
-                        String.format("Pass %d, pair(%d,%d), iter %d: swap %d<->%d gain=%d cuts=%d",
-                                pass, p1, p2, s.iter, s.v1, s.v2, s.gain, s.cuts));
-                step.highlight(s.v1, s.v2);
-                stepList.add(step);
-            }
-            return swaps.get(bestIdx).map;
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
-
-        return null;
     }
 
-    static class SwapInfo {
-        int[] map;
-        int v1, v2, gain, cuts, iter;
-
-        SwapInfo(int[] m, int v1, int v2, int g, int c, int i) {
-            this.map = m;
-            this.v1 = v1;
-            this.v2 = v2;
-            this.gain = g;
-            this.cuts = c;
-            this.iter = i;
-        }
+    // Run several seeded starts and show the trace of the best one. The best run is only known
+    // at the end, so nothing is streamed here.
+    private void startMultiStart(int numParts, float margin, int starts, long timeLimit, long seed,
+                                 PartitionEngine.Refinement method, PartitionEngine.InitialPartition initial) {
+        logArea.setText("Starting " + starts + " runs of " + method + " (seed " + seed + ")...\n");
+        Graph g = graph;
+        MultiStartPartitioner multiStart = new MultiStartPartitioner(method);
+        multiStart.setStarts(starts);
+        multiStart.setInitialPartition(initial);
+        multiStart.setKeepTraces(true);
+        multiStart.setTimeBudget(timeLimit);
+        multiStart.setSeed(seed);
+        steps = null;
+        runInBackground(() -> multiStart.run(g, numParts, margin), null, multiStart::cancel, runs -> {
+            result = runs.best;
+            steps = runs.traces.get(runs.bestRun);
+            logArea.append(String.format("Cuts over %d runs: min=%d max=%d mean=%.1f stddev=%.1f\n",
+                    starts, runs.minCuts(), runs.maxCuts(), runs.meanCuts(), runs.stdDevCuts()));
+            logArea.append("Showing run " + (runs.bestRun + 1) + " (seed " + runs.seeds[runs.bestRun] + ")\n");
+            displayStep();
+            logArea.append("Generated " + steps.size() + " steps\n");
+        });
     }
 
-    // Compute gain for each vertex
-    private int[] computeGains(Graph g, int[] map, int p1, int p2, boolean[] locked) {
-        int[] gains = new int[g.numVertices];
+    // Run task on a SwingWorker. While it runs, a timer on the event thread drains queue (if
+    // any) into steps; onDone gets the task's value on the event thread once it finishes.
+    private <T> void runInBackground(Callable<T> task, StepQueue queue, Runnable cancel, Consumer<T> onDone) {
+        stopPlay();
+        result = null;
+        currentStep = 0;
+        cancelAction = cancel;
+        setRunning(true);
+        updateNavigation();
 
-        for (int v = 0; v < g.numVertices; v++) {
-            if (locked[v] || (map[v] != p1 && map[v] != p2)) {
-                continue;
+        if (queue != null) {
+            drainTimer = new javax.swing.Timer(50, e -> drainSteps(queue));
+            drainTimer.start();
+        }
+        worker = new SwingWorker<T, Void>() {
+            protected T doInBackground() throws Exception {
+                return task.call();
             }
 
-            int internal = 0, external = 0;
-            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
-                int neighbor = g.adjacency[i];
-                if (map[v] == map[neighbor]) {
-                    internal++;
-                } else {
-                    external++;
+            protected void done() {
+                if (drainTimer != null) {
+                    drainTimer.stop();
+                    drainTimer = null;
+                    drainSteps(queue);
+                }
+                worker = null;
+                setRunning(false);
+                try {
+                    onDone.accept(get());
+                    saveButton.setEnabled(true);
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(GraphPartitionGUI.this, ex.getCause().getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
                 }
+                updateNavigation();
             }
-            gains[v] = external - internal;
-        }
-        return gains;
+        };
+        worker.execute();
     }
 
-    // Helper methods
-    private int[] randomPartition(int n, int parts) {
-        int[] map = new int[n];
-        List<Integer> indices = new ArrayList<>();
-        for (int i = 0; i < n; i++) indices.add(i);
-        Collections.shuffle(indices);
-
-        for (int i = 0; i < n; i++) {
-            map[indices.get(i)] = i % parts;
+    // Move the steps queued so far into the timeline; the first one is shown right away
+    private void drainSteps(StepQueue queue) {
+        int before = steps.size();
+        if (queue.drainTo(steps) == 0) return;
+        if (before == 0) {
+            displayStep();
+        } else {
+            stepLabel.setText("Step: " + (currentStep + 1) + "/" + steps.size());
         }
-        return map;
+        updateNavigation();
     }
 
-    private int countCuts(Graph g, int[] map) {
-        int cuts = 0;
-        for (int u = 0; u < g.numVertices; u++) {
-            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
-                int v = g.adjacency[i];
-                if (u < v && map[u] != map[v]) {
-                    cuts++;
-                }
-            }
-        }
-        return cuts;
+    private void cancelAlgorithm() {
+        if (worker == null) return;
+        cancelAction.run();
+        cancelButton.setEnabled(false);
+        logArea.append("Cancelling...\n");
     }
 
-    private boolean hasEdge(Graph g, int u, int v) {
-        for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
-            if (g.adjacency[i] == v) return true;
-        }
-        return false;
+    private void setRunning(boolean running) {
+        partitionButton.setEnabled(!running);
+        loadButton.setEnabled(!running);
+        randomButton.setEnabled(!running);
+        cancelButton.setEnabled(running);
+        saveButton.setEnabled(false);
+    }
+
+    private void updateNavigation() {
+        boolean hasSteps = steps != null && steps.size() > 0;
+        stepButton.setEnabled(hasSteps && !isPlaying);
+        playButton.setEnabled(hasSteps);
+        resetButton.setEnabled(hasSteps);
     }
 
     // UI control methods
@@ -674,11 +537,6 @@ public class GraphPartitionGUI extends JFrame {
         stepLabel.setText("Step: " + (currentStep + 1) + "/" + steps.size());
         logArea.append(step.description + "\n");
         logArea.setCaretPosition(logArea.getDocument().getLength());
-
-        // Update partitions for saving
-        if (currentStep == steps.size() - 1) {
-            partitions = makePartitions(step.partitionMap);
-        }
     }
 
     private void togglePlay() {
@@ -708,51 +566,14 @@ public class GraphPartitionGUI extends JFrame {
         logArea.append("\n--- Reset ---\n");
     }
 
-    private Partition[] makePartitions(int[] map) {
-        int numParts = 0;
-        for (int p : map) {
-            if (p + 1 > numParts) numParts = p + 1;
-        }
-
-        List<List<Integer>> temp = new ArrayList<>();
-        for (int i = 0; i < numParts; i++) {
-            temp.add(new ArrayList<>());
-        }
-
-        for (int v = 0; v < map.length; v++) {
-            temp.get(map[v]).add(v);
-        }
-
-        Partition[] result = new Partition[numParts];
-        for (int i = 0; i < numParts; i++) {
-            result[i] = new Partition();
-            List<Integer> list = temp.get(i);
-            result[i].vertices = new int[list.size()];
-            for (int j = 0; j < list.size(); j++) {
-                result[i].vertices[j] = list.get(j);
-            }
-        }
-        return result;
-    }
-
     private void saveResult() {
-        if (partitions == null) return;
+        if (result == null) return;
 
         JFileChooser fc = new JFileChooser(".");
         if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                PrintWriter pw = new PrintWriter(new FileWriter(fc.getSelectedFile()));
-                pw.println(partitions.length);
-                pw.println(steps.get(steps.size() - 1).cutEdges);
-
-                for (Partition p : partitions) {
-                    pw.print(p.vertices.length);
-                    for (int v : p.vertices) {
-                        pw.print(" " + v);
-                    }
-                    pw.println();
-                }
-                pw.close();
+                GraphIO.savePartition(fc.getSelectedFile(), graph, result.partitionMap,
+                        result.numParts, result.cutEdges);
                 JOptionPane.showMessageDialog(this, "Saved successfully!");
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
@@ -0,0 +1,113 @@
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads the semicolon-separated number lines of a graph file one number at a time, straight
+ * from a character buffer. No line is ever held as a String or split into tokens, so the
+ * adjacency line of a huge graph costs nothing beyond the numbers the caller keeps.
+ */
+public class GraphTokenizer implements Closeable {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private int line = 1;
+
+    GraphTokenizer(String path) throws IOException {
+        this(new FileReader(path));
+    }
+
+    GraphTokenizer(Reader in) {
+        this.in = in;
+    }
+
+    // Next character without consuming it, or -1 at the end of the stream
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos];
+    }
+
+    // Skip separators and blanks; true if another number follows on the current line
+    boolean hasNext() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == ';' || c == ' ' || c == '\t' || c == '\r') {
+                pos++;
+            } else {
+                return c != '\n' && c != -1;
+            }
+        }
+    }
+
+    int nextInt() throws IOException {
+        if (!hasNext()) throw new IOException("Line " + line + ": number expected");
+        boolean negative = peek() == '-';
+        if (negative) pos++;
+        long value = 0;
+        int digits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) throw new IOException("Line " + line + ": number out of range");
+            pos++;
+            digits++;
+        }
+        if (digits == 0 || (c != ';' && c != ' ' && c != '\t' && c != '\r' && c != '\n' && c != -1)) {
+            throw new IOException("Line " + line + ": invalid number");
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw new IOException("Line " + line + ": number out of range");
+        return (int) value;
+    }
+
+    // Read the rest of the current line; expected is the required count, or -1 for any
+    int[] readInts(int expected, String what) throws IOException {
+        int[] values = new int[expected >= 0 ? expected : 1024];
+        int count = 0;
+        while (hasNext()) {
+            if (count == values.length) {
+                if (expected >= 0) break;
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nextInt();
+        }
+        if (expected >= 0 && (count != expected || hasNext())) {
+            throw new IOException("Invalid " + what + " count on line " + line + ", expected " + expected);
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    // Skip to the start of the next line; false if the stream ends first
+    boolean nextLine() throws IOException {
+        int c;
+        while ((c = peek()) != -1) {
+            pos++;
+            if (c == '\n') {
+                line++;
+                return peek() != -1;
+            }
+        }
+        return false;
+    }
+
+    int line() {
+        return line;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Direct k-way refinement: greedy moves of boundary vertices to the part they have the most
+ * edge weight into. Each vertex keeps a sparse connectivity table of (part, edge weight)
+ * entries, one per neighboring part, in a slice of its CSR row's size. Moving a vertex
+ * only updates the tables of its neighbors, and a pass visits the boundary vertices only,
+ * so its cost depends on the boundary size, not on the number of part pairs.
+ */
+public class KWayRefiner {
+
+    private final Graph g;
+    private final int[] map;
+    private final PartBalance balance;
+
+    // Connectivity table: vertex v's entries are at pointers[v] .. pointers[v] + count[v]
+    private final int[] tablePart;
+    private final int[] tableWeight;
+    private final int[] count;
+
+    // Vertices with an edge into another part; position[v] is v's index, or -1
+    private final int[] boundary;
+    private final int[] position;
+    private int boundarySize;
+
+    KWayRefiner(Graph g, int[] map, PartBalance balance) {
+        this.g = g;
+        this.map = map;
+        this.balance = balance;
+        int n = g.numVertices;
+        tablePart = new int[g.adjacency.length];
+        tableWeight = new int[g.adjacency.length];
+        count = new int[n];
+        boundary = new int[n];
+        position = new int[n];
+        java.util.Arrays.fill(position, -1);
+
+        for (int v = 0; v < n; v++) {
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                add(v, map[g.adjacency[i]], g.edgeWeight(i));
+            }
+            updateBoundary(v);
+        }
+    }
+
+    int boundarySize() {
+        return boundarySize;
+    }
+
+    // Edge weight from v into part p
+    int connectivity(int v, int p) {
+        int start = g.pointers[v];
+        for (int i = start; i < start + count[v]; i++) {
+            if (tablePart[i] == p) return tableWeight[i];
+        }
+        return 0;
+    }
+
+    // Add weight to v's entry for part p, dropping the entry when it reaches zero. Only
+    // positive weights are stored, so a row never holds more entries than v has neighbors.
+    private void add(int v, int p, int weight) {
+        if (weight == 0) return;
+        int start = g.pointers[v];
+        int end = start + count[v];
+        for (int i = start; i < end; i++) {
+            if (tablePart[i] != p) continue;
+            tableWeight[i] += weight;
+            if (tableWeight[i] == 0) {
+                tablePart[i] = tablePart[end - 1];
+                tableWeight[i] = tableWeight[end - 1];
+                count[v]--;
+            }
+            return;
+        }
+        tablePart[end] = p;
+        tableWeight[end] = weight;
+        count[v]++;
+    }
+
+    private void updateBoundary(int v) {
+        int start = g.pointers[v];
+        boolean onBoundary = count[v] > 1 || (count[v] == 1 && tablePart[start] != map[v]);
+        if (onBoundary && position[v] == -1) {
+            position[v] = boundarySize;
+            boundary[boundarySize++] = v;
+        } else if (!onBoundary && position[v] != -1) {
+            int last = boundary[--boundarySize];
+            boundary[position[v]] = last;
+            position[last] = position[v];
+            position[v] = -1;
+        }
+    }
+
+    // One greedy pass over the boundary as it stood at the start of the pass. A vertex moves
+    // to the neighboring part with the highest gain that the balance window allows, if the
+    // gain is positive, or zero and the move evens out the two part weights (which cannot
+    // cycle). Moves are applied at once; stops early when the engine is cancelled or out of
+    // time. Returns the number of moves.
+    int pass(PartitionEngine engine, PartitionEngine.CutTracker tracker, int pass, StepListener listener) {
+        int[] candidates = java.util.Arrays.copyOf(boundary, boundarySize);
+        int moves = 0;
+        for (int v : candidates) {
+            if (engine.shouldStop()) break;
+            if (position[v] == -1) continue;
+
+            int from = map[v];
+            int weight = g.vertexWeight(v);
+            int internal = connectivity(v, from);
+            int bestPart = -1;
+            int bestGain = 0;
+            int start = g.pointers[v];
+            for (int i = start; i < start + count[v]; i++) {
+                int p = tablePart[i];
+                if (p == from || !balance.canMove(from, p, weight)) continue;
+                int gain = tableWeight[i] - internal;
+                boolean better = bestPart == -1 ? gain >= 0
+                        : gain > bestGain || (gain == bestGain && balance.sizes[p] < balance.sizes[bestPart]);
+                if (better) {
+                    bestPart = p;
+                    bestGain = gain;
+                }
+            }
+            if (bestPart == -1) continue;
+            if (bestGain == 0 && balance.sizes[bestPart] + weight >= balance.sizes[from]) continue;
+
+            move(v, bestPart);
+            tracker.cuts -= bestGain;
+            moves++;
+            if (PartitionEngine.VERIFY_CUTS) tracker.verify(g, map);
+            if (listener != null) {
+                listener.onStep(map, tracker.cuts, String.format("Pass %d, k-way move %d: %d part %d -> %d gain=%d cuts=%d",
+                        pass, moves, v, from, bestPart, bestGain, tracker.cuts), v, -1);
+            }
+        }
+        return moves;
+    }
+
+    // Move v to part to, keeping the neighbors' tables, the boundary and the part weights current
+    void move(int v, int to) {
+        int from = map[v];
+        map[v] = to;
+        balance.move(from, to, g.vertexWeight(v));
+        for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+            int u = g.adjacency[i];
+            add(u, from, -g.edgeWeight(i));
+            add(u, to, g.edgeWeight(i));
+            updateBoundary(u);
+        }
+        updateBoundary(v);
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Size-constrained label propagation: every vertex in turn joins the part it has the most
+ * edge weight into, as long as the balance window allows it. A round has two phases. The
+ * search reads the labels and part weights as they stood at the start of the round and
+ * records the best part of about half of the vertices; it is split into vertex ranges that
+ * worker threads process at the same time. The commit then visits the vertices in id order
+ * and moves each one to its recorded part if the balance window still allows it. Rounds
+ * cost O(|E|) with no pair search at all, which makes this usable on graphs far beyond the
+ * reach of KL, either on its own or as the start for refinement. No thread ever sees
+ * another's moves, so the result is the same for any thread count.
+ */
+public class LabelPropagation {
+
+    static final int MAX_ROUNDS = 20;
+    // Stop once a round moves fewer than this fraction of the vertices
+    static final double MIN_MOVED_FRACTION = 0.001;
+    static final int VERTICES_PER_TASK = 4096;
+
+    // Start for label propagation: runs of consecutive vertex ids, one per part. Graph files
+    // tend to number nearby vertices close together, which a random start would throw away.
+    static int[] blockPartition(Graph g, int[] shares) {
+        int[] order = new int[g.numVertices];
+        for (int v = 0; v < order.length; v++) order[v] = v;
+        return SpectralPartitioner.splitInOrder(g, order, shares);
+    }
+
+    // Improve map in place; balance supplies the window and the current part weights and is
+    // kept up to date. Stops after the current round once engine.shouldStop(). Returns the
+    // number of rounds run.
+    static int propagate(Graph g, int[] map, PartBalance balance, int threads, PartitionEngine engine) {
+        int n = g.numVertices;
+        int tasks = (n + VERTICES_PER_TASK - 1) / VERTICES_PER_TASK;
+        ForkJoinPool pool = threads > 1 && tasks > 1 ? new ForkJoinPool(threads) : null;
+        int[] target = new int[n];
+
+        int rounds = 0;
+        try {
+            while (rounds < MAX_ROUNDS && !engine.shouldStop()) {
+                int round = ++rounds;
+                if (pool == null) {
+                    search(g, map, balance.sizes, target, round, 0, n);
+                } else {
+                    int[] sizes = balance.sizes;
+                    pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(t -> search(g, map, sizes,
+                            target, round, t * VERTICES_PER_TASK, Math.min(n, (t + 1) * VERTICES_PER_TASK)))).join();
+                }
+
+                int moved = 0;
+                for (int v = 0; v < n; v++) {
+                    int from = map[v];
+                    if (target[v] != from && balance.canMove(from, target[v], g.vertexWeight(v))) {
+                        balance.move(from, target[v], g.vertexWeight(v));
+                        map[v] = target[v];
+                        moved++;
+                    }
+                }
+                if (moved < MIN_MOVED_FRACTION * n) break;
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        return rounds;
+    }
+
+    // Record in target the best part of each vertex from .. to - 1 that is active this round
+    // (the others keep their part). Reads map and the part weights (sizes) only, so ranges
+    // can be searched concurrently.
+    private static void search(Graph g, int[] map, int[] sizes, int[] target, int round, int from, int to) {
+        int[] weight = new int[sizes.length];
+        int[] touched = new int[sizes.length];
+        for (int v = from; v < to; v++) {
+            target[v] = active(v, round) ? bestPart(g, map, sizes, v, weight, touched) : map[v];
+        }
+    }
+
+    // About half of the vertices, a different half every round. All vertices of a round see
+    // the same labels, so two neighbors that want each other's part would otherwise both move
+    // and swap back and forth round after round.
+    private static boolean active(int v, int round) {
+        int h = (v ^ round * 0x85EBCA6B) * 0x9E3779B9;
+        return h >= 0;
+    }
+
+    // Neighboring part v has the most edge weight into; ties go to the lighter part. Like the
+    // k-way refinement, an equal-weight move is only wanted if it evens out the parts.
+    // weight and touched are scratch arrays of size k, all zero on entry and on return.
+    private static int bestPart(Graph g, int[] map, int[] sizes, int v, int[] weight, int[] touched) {
+        int own = map[v];
+        int count = 0;
+        for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+            int w = g.edgeWeight(i);
+            if (w == 0) continue;
+            int p = map[g.adjacency[i]];
+            if (weight[p] == 0) touched[count++] = p;
+            weight[p] += w;
+        }
+
+        int vw = g.vertexWeight(v);
+        int best = own;
+        for (int j = 0; j < count; j++) {
+            int p = touched[j];
+            if (p == own) continue;
+            int diff = weight[p] - weight[best];
+            if (diff > 0 || (diff == 0 && (best == own ? sizes[p] + vw < sizes[own] : sizes[p] < sizes[best]))) {
+                best = p;
+            }
+        }
+        for (int j = 0; j < count; j++) weight[touched[j]] = 0;
+        return best;
+    }
+}
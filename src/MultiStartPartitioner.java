@@ -0,0 +1,188 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-start partitioner: runs several independently seeded KL/FM runs in parallel
+ * and keeps the one with the fewest cut edges.
+ */
+public class MultiStartPartitioner {
+
+    private final PartitionEngine.Refinement refinement;
+    private int starts = 8;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = System.nanoTime();
+    private boolean keepTraces;
+    private PartitionEngine.InitialPartition initial = PartitionEngine.InitialPartition.RANDOM;
+    private final List<PartitionEngine> engines = new ArrayList<>();
+    private volatile boolean cancelled;
+    private File checkpointBase;
+    private int checkpointEvery = 1;
+    private boolean resume;
+    private long timeBudget;
+
+    // Outcome of all runs: the best result plus the spread of cut values
+    static class Result {
+        PartitionResult best;
+        int bestRun;
+        long[] seeds;
+        int[] cuts;
+        List<StepTimeline> traces;   // per run, only when traces were requested
+        boolean stoppedAtDeadline;   // some run was cut short by the time budget
+
+        int minCuts() {
+            return cuts[bestRun];
+        }
+
+        int maxCuts() {
+            int max = cuts[0];
+            for (int c : cuts) max = Math.max(max, c);
+            return max;
+        }
+
+        double meanCuts() {
+            double sum = 0;
+            for (int c : cuts) sum += c;
+            return sum / cuts.length;
+        }
+
+        double stdDevCuts() {
+            double mean = meanCuts();
+            double sum = 0;
+            for (int c : cuts) sum += (c - mean) * (c - mean);
+            return Math.sqrt(sum / cuts.length);
+        }
+    }
+
+    public MultiStartPartitioner(PartitionEngine.Refinement refinement) {
+        this.refinement = refinement;
+    }
+
+    public void setStarts(int starts) {
+        this.starts = Math.max(1, starts);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    // Seed for the whole multi-start run; the per-run seeds are derived from it
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setInitialPartition(PartitionEngine.InitialPartition initial) {
+        this.initial = initial;
+    }
+
+    // Keep every run's step trace. Off by default, so memory does not grow with the run count.
+    public void setKeepTraces(boolean keepTraces) {
+        this.keepTraces = keepTraces;
+    }
+
+    // Time budget in milliseconds for all runs together, counted from the start of run()
+    // (0 = none); runs still going when it is used up return their best partition so far
+    public void setTimeBudget(long millis) {
+        this.timeBudget = millis;
+    }
+
+    // Run i checkpoints to "<base>.run<i>" every everyPasses passes. With resume, runs whose
+    // file exists continue from it (finished runs just report their result) instead of starting over.
+    public void setCheckpoint(File base, int everyPasses, boolean resume) {
+        this.checkpointBase = base;
+        this.checkpointEvery = everyPasses;
+        this.resume = resume;
+    }
+
+    // Stop all runs, from any thread; each returns its partition as it stands
+    public void cancel() {
+        cancelled = true;
+        synchronized (engines) {
+            for (PartitionEngine engine : engines) engine.cancel();
+        }
+    }
+
+    public Result run(Graph g, int numParts, float margin) {
+        Result result = new Result();
+        result.seeds = new long[starts];
+        result.cuts = new int[starts];
+        // Run seeds are drawn up front, in run order, so they do not depend on scheduling, and
+        // any run can be repeated on its own with PartitionEngine.run(g, k, margin, seed)
+        SplittableRandom master = new SplittableRandom(seed);
+        for (int i = 0; i < starts; i++) {
+            result.seeds[i] = master.nextLong();
+        }
+
+        List<StepTimeline> traces = new ArrayList<>();
+        List<Callable<PartitionResult>> tasks = new ArrayList<>();
+        List<PartitionEngine> runEngines = new ArrayList<>();
+        for (int i = 0; i < starts; i++) {
+            PartitionEngine engine = new PartitionEngine();
+            runEngines.add(engine);
+            engine.setRefinement(refinement);
+            engine.setInitialPartition(initial);
+            engine.setTimeBudget(timeBudget);
+            synchronized (engines) {
+                engines.add(engine);
+                if (cancelled) engine.cancel();
+            }
+            if (keepTraces) {
+                StepTimeline trace = new StepTimeline();
+                engine.setListener(trace);
+                traces.add(trace);
+            }
+            long runSeed = result.seeds[i];
+            if (checkpointBase != null) {
+                File file = new File(checkpointBase.getPath() + ".run" + i);
+                engine.setCheckpoint(file, checkpointEvery);
+                if (resume && file.exists()) {
+                    Checkpoint checkpoint;
+                    try {
+                        checkpoint = Checkpoint.read(file);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Reading checkpoint " + file + " failed", ex);
+                    }
+                    checkpoint.validate(g.numVertices, numParts);
+                    result.seeds[i] = checkpoint.seed;
+                    tasks.add(() -> engine.resume(g, checkpoint));
+                    continue;
+                }
+            }
+            tasks.add(() -> engine.run(g, numParts, margin, runSeed));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, starts));
+        try {
+            List<Future<PartitionResult>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < starts; i++) {
+                PartitionResult r = futures.get(i).get();
+                result.cuts[i] = r.cutEdges;
+                if (result.best == null || r.cutEdges < result.best.cutEdges) {
+                    result.best = r;
+                    result.bestRun = i;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Multi-start interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        for (PartitionEngine engine : runEngines) {
+            result.stoppedAtDeadline |= engine.stoppedAtDeadline();
+        }
+        result.traces = keepTraces ? traces : null;
+        return result;
+    }
+}
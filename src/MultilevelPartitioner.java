@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Multilevel partitioner: coarsens the graph by heavy-edge matching, partitions the
+ * coarsest graph, then projects the partition back level by level and refines it
+ * with the engine's KL/FM pass at every level.
+ */
+public class MultilevelPartitioner {
+
+    // Stop coarsening once the graph is this small
+    static final int COARSEST_SIZE = 200;
+    // ...or once a level shrinks the graph by less than this factor
+    static final double MIN_REDUCTION = 0.9;
+    // Pair up the leftovers of heavy-edge matching once more than this fraction is unmatched
+    static final double LEFTOVER_MATCH_ABOVE = 0.25;
+    // Vertices matched, or coarse rows built, between checks of engine.shouldStop()
+    static final int STOP_CHECK_ROWS = 1 << 16;
+
+    private final PartitionEngine engine;
+
+    // One coarsening level: the coarse graph plus the map from the finer level onto it.
+    // A coarse vertex weighs as much as the vertices merged into it, and a coarse edge as
+    // much as the edges it replaces.
+    static class Level {
+        Graph graph;
+        int[] coarseOf;       // finer vertex -> vertex of this level
+    }
+
+    public MultilevelPartitioner(PartitionEngine engine) {
+        this.engine = engine;
+    }
+
+    public PartitionResult run(Graph g, int numParts, float margin) {
+        return run(g, numParts, margin, new SplittableRandom().nextLong());
+    }
+
+    // Same as run, with the coarsening and the initial partition drawn from the given seed
+    public PartitionResult run(Graph g, int numParts, float margin, long seed) {
+        long start = System.nanoTime();
+        SplittableRandom rand = new SplittableRandom(seed);
+        List<Level> levels = coarsenAll(g, numParts, rand, engine);
+        Graph coarsest = levels.isEmpty() ? g : levels.get(levels.size() - 1).graph;
+
+        // Only the finest level can be shown, so steps are reported for that one alone
+        StepListener listener = engine.getListener();
+        engine.setListener(null);
+        PartitionResult result;
+        try {
+            Level current = new Level();
+            current.graph = coarsest;
+            int[] map = engine.getInitialPartition() == PartitionEngine.InitialPartition.SPECTRAL
+                    ? SpectralPartitioner.partition(coarsest, numParts, rand, engine)
+                    : initialPartition(current, numParts, rand);
+            if (engine.getInitialPartition() == PartitionEngine.InitialPartition.LABEL_PROPAGATION) {
+                LabelPropagation.propagate(coarsest, map, new PartBalance(coarsest, map, numParts, margin),
+                        engine.getThreads(), engine);
+            }
+            if (!levels.isEmpty()) {
+                engine.setCheckpointLevel(levels.size(), seed);
+                map = engine.refine(coarsest, map, numParts, margin, null).partitionMap;
+            }
+            result = uncoarsen(g, levels, map, levels.size(), numParts, margin, seed, listener);
+        } finally {
+            engine.setListener(listener);
+        }
+        return new PartitionResult(result.partitionMap, numParts, result.cutEdges,
+                result.passes, System.nanoTime() - start);
+    }
+
+    // Continue a run from a checkpoint the engine wrote during run(g, ...). Coarsening again
+    // from the checkpoint's seed rebuilds the same levels, so refinement picks up at the
+    // checkpoint's level and pass and then uncoarsens as usual.
+    public PartitionResult resume(Graph g, Checkpoint checkpoint) {
+        long start = System.nanoTime();
+        List<Level> levels = coarsenAll(g, checkpoint.numParts, new SplittableRandom(checkpoint.seed), null);
+        if (checkpoint.level > levels.size()) {
+            throw new IllegalArgumentException("Checkpoint is for coarsening level " + checkpoint.level
+                    + ", but the graph only has " + levels.size());
+        }
+
+        StepListener listener = engine.getListener();
+        PartitionResult result;
+        try {
+            if (checkpoint.level == 0) {
+                result = engine.resume(g, checkpoint);
+            } else {
+                engine.setListener(null);
+                int[] map = engine.resume(levels.get(checkpoint.level - 1).graph, checkpoint).partitionMap;
+                result = uncoarsen(g, levels, map, checkpoint.level, checkpoint.numParts, checkpoint.margin,
+                        checkpoint.seed, listener);
+            }
+        } finally {
+            engine.setListener(listener);
+        }
+        return new PartitionResult(result.partitionMap, checkpoint.numParts, result.cutEdges,
+                result.passes, System.nanoTime() - start);
+    }
+
+    // Coarsening phase: the levels from the first coarse graph down to the coarsest. Once
+    // engine.shouldStop() no further level is built, and the coarsest one so far is
+    // partitioned. Levels come from rand alone, so a stopped run holds the first levels of a
+    // full one; resume passes a null engine to rebuild every level a checkpoint may refer to.
+    private static List<Level> coarsenAll(Graph g, int numParts, SplittableRandom rand, PartitionEngine engine) {
+        int limit = Math.max(COARSEST_SIZE, 8 * numParts);
+        List<Level> levels = new ArrayList<>();
+        Level current = new Level();
+        current.graph = g;
+        while (current.graph.numVertices > limit && (engine == null || !engine.shouldStop())) {
+            Level next = coarsen(current, rand, engine);
+            if (next == null || next.graph.numVertices > MIN_REDUCTION * current.graph.numVertices) break;
+            levels.add(next);
+            current = next;
+        }
+        return levels;
+    }
+
+    // Uncoarsening phase: project the refined partition of level from (0 = g) down one level
+    // at a time, refining it at each; the listener is attached again for g itself
+    private PartitionResult uncoarsen(Graph g, List<Level> levels, int[] map, int from, int numParts,
+                                      float margin, long seed, StepListener listener) {
+        for (int l = from - 1; l >= 0; l--) {
+            Level level = levels.get(l);
+            Graph finer = l > 0 ? levels.get(l - 1).graph : g;
+            int[] finerMap = new int[finer.numVertices];
+            for (int v = 0; v < finer.numVertices; v++) {
+                finerMap[v] = map[level.coarseOf[v]];
+            }
+            map = finerMap;
+            if (l > 0) {
+                engine.setCheckpointLevel(l, seed);
+                map = engine.refine(finer, map, numParts, margin, null).partitionMap;
+            }
+        }
+
+        // Coarse levels allow a whole coarse vertex of slack, which can leave the projected
+        // parts outside the finest level's window; restore it before the final refinement
+        rebalance(g, map, numParts, margin);
+
+        engine.setListener(listener);
+        engine.setCheckpointLevel(0, seed);
+        return engine.refine(g, map, numParts, margin, levels.isEmpty()
+                ? "Initial partition (graph too small to coarsen)"
+                : "Projected from " + levels.size() + " coarsening levels");
+    }
+
+    // Heavy-edge matching: visit vertices in random order and merge each unmatched vertex
+    // with the unmatched neighbor it shares the heaviest edge with. On power-law graphs the
+    // hubs' neighbors are left without a partner once the hub is taken, and isolated vertices
+    // never get one, so coarsening would stall. When many are left, each is paired with
+    // another leftover next to the same vertex (two-hop matching), and isolated ones with each
+    // other. On meshes few are left and merging non-neighbors would only cost cut quality.
+    // Returns null, leaving the level unbuilt, once a non-null engine shouldStop().
+    static Level coarsen(Level fine, SplittableRandom rand, PartitionEngine engine) {
+        Graph g = fine.graph;
+        int n = g.numVertices;
+
+        int[] order = PartitionEngine.randomOrder(n, rand);
+
+        int[] match = new int[n];
+        Arrays.fill(match, -1);
+        int unmatched = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % STOP_CHECK_ROWS == 0 && engine != null && engine.shouldStop()) return null;
+            int u = order[i];
+            if (match[u] != -1) continue;
+            int best = u;
+            int bestWeight = 0;
+            for (int j = g.pointers[u]; j < g.pointers[u + 1]; j++) {
+                int v = g.adjacency[j];
+                if (match[v] == -1 && v != u && g.edgeWeight(j) > bestWeight) {
+                    best = v;
+                    bestWeight = g.edgeWeight(j);
+                }
+            }
+            match[u] = best;
+            match[best] = u;
+            if (best == u) unmatched++;
+        }
+        if (unmatched > LEFTOVER_MATCH_ABOVE * n) matchLeftovers(g, order, match);
+        if (engine != null && engine.shouldStop()) return null;
+
+        int[] coarseOf = new int[n];
+        Arrays.fill(coarseOf, -1);
+        int nc = 0;
+        for (int u : order) {
+            if (coarseOf[u] != -1) continue;
+            coarseOf[u] = nc;
+            coarseOf[match[u]] = nc;
+            nc++;
+        }
+
+        // Members of each coarse vertex (second is -1 for unmatched vertices)
+        int[] first = new int[nc];
+        int[] second = new int[nc];
+        Arrays.fill(first, -1);
+        for (int u = 0; u < n; u++) {
+            int c = coarseOf[u];
+            if (first[c] == -1) {
+                first[c] = u;
+                second[c] = -1;
+            } else {
+                second[c] = u;
+            }
+        }
+
+        // Build the coarse CSR, merging parallel edges and summing their weights
+        Level coarse = new Level();
+        coarse.coarseOf = coarseOf;
+        int[] vertexWeights = new int[nc];
+        int[] pointers = new int[nc + 1];
+        int[] adjacency = new int[g.adjacency.length];
+        int[] weights = new int[g.adjacency.length];
+        int[] slot = new int[nc];
+        Arrays.fill(slot, -1);
+        int idx = 0;
+        for (int c = 0; c < nc; c++) {
+            if (c % STOP_CHECK_ROWS == 0 && engine != null && engine.shouldStop()) return null;
+            pointers[c] = idx;
+            int rowStart = idx;
+            for (int k = 0; k < 2; k++) {
+                int u = k == 0 ? first[c] : second[c];
+                if (u == -1) continue;
+                vertexWeights[c] += g.vertexWeight(u);
+                for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                    int cv = coarseOf[g.adjacency[i]];
+                    if (cv == c) continue;
+                    if (slot[cv] >= rowStart) {
+                        weights[slot[cv]] += g.edgeWeight(i);
+                    } else {
+                        slot[cv] = idx;
+                        adjacency[idx] = cv;
+                        weights[idx] = g.edgeWeight(i);
+                        idx++;
+                    }
+                }
+            }
+            Arrays.sort(adjacency, rowStart, idx);
+            // Sorting moved the row's entries, so rebuild its weights in the new order
+            int[] rowWeights = new int[idx - rowStart];
+            for (int i = rowStart; i < idx; i++) rowWeights[i - rowStart] = weights[slot[adjacency[i]]];
+            System.arraycopy(rowWeights, 0, weights, rowStart, rowWeights.length);
+            for (int i = rowStart; i < idx; i++) slot[adjacency[i]] = i;
+        }
+        pointers[nc] = idx;
+
+        coarse.graph = new Graph();
+        coarse.graph.numVertices = nc;
+        coarse.graph.pointers = pointers;
+        coarse.graph.adjacency = Arrays.copyOf(adjacency, idx);
+        coarse.graph.edgeWeights = Arrays.copyOf(weights, idx);
+        coarse.graph.vertexWeights = vertexWeights;
+        return coarse;
+    }
+
+    // Pair the vertices heavy-edge matching left on their own (match[u] == u): first any two
+    // that are neighbors of the same vertex, scanning the vertices in the given order, then
+    // the isolated ones among themselves. Either pass is one sweep.
+    private static void matchLeftovers(Graph g, int[] order, int[] match) {
+        for (int h : order) {
+            int pending = -1;
+            for (int i = g.pointers[h]; i < g.pointers[h + 1]; i++) {
+                int v = g.adjacency[i];
+                if (match[v] != v || v == h) continue;
+                if (pending == -1) {
+                    pending = v;
+                } else {
+                    match[pending] = v;
+                    match[v] = pending;
+                    pending = -1;
+                }
+            }
+        }
+
+        int pending = -1;
+        for (int u : order) {
+            if (match[u] != u || g.pointers[u + 1] > g.pointers[u]) continue;
+            if (pending == -1) {
+                pending = u;
+            } else {
+                match[pending] = u;
+                match[u] = pending;
+                pending = -1;
+            }
+        }
+    }
+
+    // Balance the coarsest graph by vertex weight: heaviest vertices first, each to the lightest part
+    static int[] initialPartition(Level level, int numParts, SplittableRandom rand) {
+        int n = level.graph.numVertices;
+        int[] shuffled = PartitionEngine.randomOrder(n, rand);
+        Graph g = level.graph;
+        // (-weight, position in the shuffle) packed into one long, so a primitive sort gives
+        // the heaviest first and keeps the shuffled order among equal weights
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = (long) -g.vertexWeight(shuffled[i]) << 32 | i;
+        Arrays.sort(order);
+
+        int[] map = new int[n];
+        long[] partWeight = new long[numParts];
+        for (long key : order) {
+            int v = shuffled[(int) key];
+            int lightest = 0;
+            for (int p = 1; p < numParts; p++) {
+                if (partWeight[p] < partWeight[lightest]) lightest = p;
+            }
+            map[v] = lightest;
+            partWeight[lightest] += g.vertexWeight(v);
+        }
+        return map;
+    }
+
+    // Move vertices out of parts heavier than the balance window into parts that have room,
+    // preferring the vertices whose move costs the least extra cut weight
+    static void rebalance(Graph g, int[] map, int numParts, float margin) {
+        int n = g.numVertices;
+        PartBalance balance = new PartBalance(g, map, numParts, margin);
+        if (balance.isBalanced()) return;
+
+        // Candidates from overweight parts, best gain (external to target - internal) first,
+        // each packed as (-gain, v) like PartitionEngine.gainKey. links is only non-zero for
+        // the touched parts of the current vertex, and reset through that list.
+        int[] links = new int[numParts];
+        int[] touched = new int[numParts];
+        int[] bestTarget = new int[n];
+        long[] candidates = new long[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            int own = map[v];
+            if (balance.sizes[own] <= balance.maxSize[own]) continue;
+            int linked = 0;
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                int w = g.edgeWeight(i);
+                if (w == 0) continue;
+                int p = map[g.adjacency[i]];
+                if (links[p] == 0) touched[linked++] = p;
+                links[p] += w;
+            }
+            // The most linked part with room (lowest id on ties), else the first part with room
+            int vw = g.vertexWeight(v);
+            int best = -1;
+            for (int j = 0; j < linked; j++) {
+                int p = touched[j];
+                if (p != own && balance.canMove(own, p, vw)
+                        && (best == -1 || links[p] > links[best] || (links[p] == links[best] && p < best))) best = p;
+            }
+            for (int p = 0; best == -1 && p < numParts; p++) {
+                if (p != own && balance.canMove(own, p, vw)) best = p;
+            }
+            if (best != -1) {
+                bestTarget[v] = best;
+                candidates[count++] = ((long) -(links[best] - links[own]) << 32) | v;
+            }
+            for (int j = 0; j < linked; j++) links[touched[j]] = 0;
+        }
+        Arrays.sort(candidates, 0, count);
+
+        for (int c = 0; c < count; c++) {
+            int v = (int) candidates[c];
+            int from = map[v];
+            int w = g.vertexWeight(v);
+            if (balance.sizes[from] <= balance.maxSize[from]) continue;
+            int to = bestTarget[v];
+            if (!balance.canMove(from, to, w)) {
+                to = -1;
+                for (int p = 0; p < numParts; p++) {
+                    if (p != from && balance.canMove(from, p, w)) {
+                        to = p;
+                        break;
+                    }
+                }
+                if (to == -1) continue;
+            }
+            map[v] = to;
+            balance.move(from, to, w);
+        }
+    }
+}
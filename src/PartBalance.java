@@ -0,0 +1,77 @@
+/**
+ * Balance constraint for a partition: every part has to stay within margin percent of the
+ * ideal part weight. Part weights are kept as counters, so checking and applying a move is O(1).
+ * For unweighted graphs the weight of a part is its vertex count.
+ */
+public class PartBalance {
+    final int[] minSize;
+    final int[] maxSize;
+    final int[] sizes;
+
+    PartBalance(Graph g, int[] map, int numParts, float margin) {
+        this(g, map, equalShares(numParts), margin);
+    }
+
+    // Part p's ideal weight is W * shares[p] / sum(shares); recursive bisection uses
+    // unequal shares to split an odd number of parts
+    PartBalance(Graph g, int[] map, int[] shares, float margin) {
+        if (margin < 0) throw new IllegalArgumentException("Margin must not be negative: " + margin);
+        int numParts = shares.length;
+        sizes = new int[numParts];
+        for (int v = 0; v < map.length; v++) {
+            sizes[map[v]] += g.vertexWeight(v);
+        }
+
+        // Each window always spans at least ceil(ideal) - w .. floor(ideal) + w for the heaviest
+        // vertex weight w, so even a margin of zero leaves single-vertex moves room to work
+        long total = g.totalVertexWeight();
+        long shareSum = 0;
+        for (int share : shares) shareSum += share;
+        int slack = g.maxVertexWeight();
+        minSize = new int[numParts];
+        maxSize = new int[numParts];
+        for (int p = 0; p < numParts; p++) {
+            long floor = total * shares[p] / shareSum;
+            long ceil = (total * shares[p] + shareSum - 1) / shareSum;
+            double ideal = (double) total * shares[p] / shareSum;
+            minSize[p] = (int) Math.min(ceil - slack, (long) Math.ceil(ideal * (1 - margin / 100.0)));
+            maxSize[p] = (int) Math.max(floor + slack, (long) Math.floor(ideal * (1 + margin / 100.0)));
+        }
+    }
+
+    static int[] equalShares(int numParts) {
+        int[] shares = new int[numParts];
+        java.util.Arrays.fill(shares, 1);
+        return shares;
+    }
+
+    // How far part p would lie outside its window at the given weight
+    int violation(int p, int size) {
+        return size < minSize[p] ? minSize[p] - size : size > maxSize[p] ? size - maxSize[p] : 0;
+    }
+
+    // A move is allowed if neither part ends up further outside the window than it is now.
+    // Inside the window this is the plain bound check; a part that starts out of bounds
+    // (a projected multilevel partition, for example) may only move towards it.
+    boolean canMove(int from, int to, int weight) {
+        return violation(from, sizes[from] - weight) <= violation(from, sizes[from])
+                && violation(to, sizes[to] + weight) <= violation(to, sizes[to]);
+    }
+
+    // Swapping v1 (weight w1, from p1) with v2 (weight w2, from p2) shifts w1 - w2 from p1 to p2
+    boolean canSwap(int p1, int p2, int w1, int w2) {
+        return canMove(p1, p2, w1 - w2);
+    }
+
+    void move(int from, int to, int weight) {
+        sizes[from] -= weight;
+        sizes[to] += weight;
+    }
+
+    boolean isBalanced() {
+        for (int p = 0; p < sizes.length; p++) {
+            if (violation(p, sizes[p]) > 0) return false;
+        }
+        return true;
+    }
+}
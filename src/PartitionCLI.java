@@ -0,0 +1,195 @@
+import java.io.File;
+import java.util.SplittableRandom;
+
+/**
+ * Command-line front end for PartitionEngine, for batch jobs on machines without a display.
+ * Usage: java PartitionCLI <graph-file> [--parts k] [--margin pct] [--method kl|fm|kway|none]
+ *        [--initial random|spectral|lp] [--multilevel | --recursive] [--starts n] [--seed s] [--threads n]
+ *        [--time-limit ms] [--checkpoint file [--checkpoint-every n] [--resume]] [--out file]
+ *    or: java PartitionCLI <graph-file> --stream ldg|fennel [--parts k] [--margin pct] [--out file]
+ */
+public class PartitionCLI {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java PartitionCLI <graph-file> [--parts k] [--margin pct]"
+                    + " [--method kl|fm|kway|none] [--initial random|spectral|lp] [--multilevel | --recursive] [--starts n]"
+                    + " [--seed s] [--threads n] [--time-limit ms] [--checkpoint file [--checkpoint-every n] [--resume]] [--out file]");
+            System.err.println("   or: java PartitionCLI <graph-file> --stream ldg|fennel [--parts k] [--margin pct]"
+                    + " [--out file]");
+            System.exit(2);
+        }
+
+        String graphFile = args[0];
+        int numParts = 2;
+        float margin = 10.0f;
+        PartitionEngine.Refinement method = PartitionEngine.Refinement.KL;
+        PartitionEngine.InitialPartition initial = PartitionEngine.InitialPartition.RANDOM;
+        boolean multilevel = false;
+        boolean recursive = false;
+        StreamingPartitioner.Scoring stream = null;
+        int starts = 1;
+        // Drawn unless given, and always printed, so that any run can be repeated with --seed
+        long seed = new SplittableRandom().nextLong();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outFile = null;
+        String checkpointFile = null;
+        int checkpointEvery = 1;
+        boolean resume = false;
+        long timeLimit = 0;
+
+        for (int i = 1; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--parts":
+                    numParts = Integer.parseInt(value);
+                    break;
+                case "--margin":
+                    margin = Float.parseFloat(value);
+                    break;
+                case "--method":
+                    method = PartitionEngine.Refinement.valueOf(value.toUpperCase());
+                    break;
+                case "--initial":
+                    initial = value.equalsIgnoreCase("lp")
+                            ? PartitionEngine.InitialPartition.LABEL_PROPAGATION
+                            : PartitionEngine.InitialPartition.valueOf(value.toUpperCase());
+                    break;
+                case "--multilevel":
+                    multilevel = true;
+                    continue;
+                case "--recursive":
+                    recursive = true;
+                    continue;
+                case "--stream":
+                    stream = StreamingPartitioner.Scoring.valueOf(value.toUpperCase());
+                    break;
+                case "--starts":
+                    starts = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    outFile = value;
+                    break;
+                case "--checkpoint":
+                    checkpointFile = value;
+                    break;
+                case "--checkpoint-every":
+                    checkpointEvery = Integer.parseInt(value);
+                    break;
+                case "--time-limit":
+                    timeLimit = Long.parseLong(value);
+                    break;
+                case "--resume":
+                    resume = true;
+                    continue;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            i++;
+        }
+
+        if (stream != null) {
+            if (multilevel || recursive || starts > 1) {
+                throw new IllegalArgumentException("--stream places every vertex once, drop --multilevel/--recursive/--starts");
+            }
+            // The graph is never loaded: vertices are placed while the file is read
+            StreamingPartitioner streaming = new StreamingPartitioner(stream);
+            PartitionResult result = streaming.run(graphFile, numParts, margin);
+            System.out.printf("vertices=%d edges=%d parts=%d stream=%s%n",
+                    result.partitionMap.length, streaming.getNumEdges(), numParts, stream.name());
+            System.out.printf("cuts=%d imbalance=%.3f time=%.1fms%n",
+                    result.cutEdges, result.imbalance(streaming.getVertexWeights()), result.elapsedNanos / 1e6);
+            if (outFile != null) {
+                GraphIO.savePartition(new File(outFile), streaming.getVertexWeights(), result.partitionMap,
+                        numParts, result.cutEdges);
+            }
+            return;
+        }
+
+        Graph g = GraphIO.loadGraphFile(graphFile);
+        if (numParts < 2 || numParts > g.numVertices) {
+            throw new IllegalArgumentException("Parts must be 2-" + g.numVertices);
+        }
+        if (multilevel && recursive) {
+            throw new IllegalArgumentException("Choose either --multilevel or --recursive");
+        }
+        if (checkpointFile != null && recursive) {
+            throw new IllegalArgumentException("--recursive does not write checkpoints");
+        }
+        if (resume && checkpointFile == null) {
+            throw new IllegalArgumentException("--resume needs --checkpoint file");
+        }
+        // Single runs resume from the checkpoint file itself, multi-start runs from one file per run
+        Checkpoint checkpoint = null;
+        if (resume && starts <= 1 && new File(checkpointFile).exists()) {
+            checkpoint = Checkpoint.read(new File(checkpointFile));
+            if (checkpoint.numParts != numParts) {
+                throw new IllegalArgumentException("Checkpoint is for " + checkpoint.numParts + " parts");
+            }
+            if (checkpoint.level > 0 && !multilevel) {
+                throw new IllegalArgumentException("Checkpoint was taken in a multilevel run, add --multilevel");
+            }
+            System.out.printf("resuming from level %d pass %d (cuts=%d seed=%d)%n",
+                    checkpoint.level, checkpoint.pass, checkpoint.cuts, checkpoint.seed);
+        }
+
+        PartitionEngine engine = new PartitionEngine();
+        engine.setRefinement(method);
+        engine.setInitialPartition(initial);
+        engine.setThreads(threads);
+        if (checkpointFile != null) engine.setCheckpoint(new File(checkpointFile), checkpointEvery);
+        // The time limit covers partitioning only, not loading the graph
+        engine.setTimeBudget(timeLimit);
+        PartitionResult result;
+        boolean outOfTime = false;
+        if (starts > 1) {
+            if (multilevel || recursive) {
+                throw new IllegalArgumentException("--starts runs flat refinement, drop --multilevel/--recursive");
+            }
+            MultiStartPartitioner multiStart = new MultiStartPartitioner(method);
+            multiStart.setStarts(starts);
+            multiStart.setThreads(threads);
+            multiStart.setInitialPartition(initial);
+            multiStart.setTimeBudget(timeLimit);
+            multiStart.setSeed(seed);
+            if (checkpointFile != null) multiStart.setCheckpoint(new File(checkpointFile), checkpointEvery, resume);
+            MultiStartPartitioner.Result runs = multiStart.run(g, numParts, margin);
+            System.out.printf("starts=%d cuts min=%d max=%d mean=%.1f stddev=%.1f best=run %d (seed %d)%n",
+                    starts, runs.minCuts(), runs.maxCuts(), runs.meanCuts(), runs.stdDevCuts(),
+                    runs.bestRun + 1, runs.seeds[runs.bestRun]);
+            result = runs.best;
+            outOfTime = runs.stoppedAtDeadline;
+        } else if (multilevel) {
+            MultilevelPartitioner multilevelPartitioner = new MultilevelPartitioner(engine);
+            result = checkpoint != null ? multilevelPartitioner.resume(g, checkpoint)
+                    : multilevelPartitioner.run(g, numParts, margin, seed);
+        } else if (recursive) {
+            RecursiveBisection bisection = new RecursiveBisection(engine);
+            bisection.setThreads(threads);
+            result = bisection.run(g, numParts, margin, seed);
+        } else if (checkpoint != null) {
+            result = engine.resume(g, checkpoint);
+        } else {
+            result = engine.run(g, numParts, margin, seed);
+        }
+        outOfTime |= engine.stoppedAtDeadline();   // idle after a multi-start
+
+        System.out.printf("vertices=%d edges=%d parts=%d method=%s initial=%s%s seed=%d%n",
+                g.numVertices, g.countEdges(), numParts, method.name(), initial.name(),
+                multilevel ? " multilevel" : recursive ? " recursive" : "",
+                checkpoint != null ? checkpoint.seed : seed);
+        System.out.printf("cuts=%d passes=%d imbalance=%.3f time=%.1fms%s%n",
+                result.cutEdges, result.passes, result.imbalance(g), result.elapsedNanos / 1e6,
+                outOfTime ? " (time limit reached)" : "");
+
+        if (outFile != null) {
+            GraphIO.savePartition(new File(outFile), g, result.partitionMap, numParts, result.cutEdges);
+        }
+    }
+}
@@ -0,0 +1,926 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Headless Kernighan-Lin / Fiduccia-Mattheyses partitioner.
+ * Works on a CSR Graph without any Swing dependency; progress is reported
+ * step by step to an optional StepListener.
+ */
+public class PartitionEngine {
+
+    static final int MAX_PASSES = 10;
+    // Recount cuts from scratch after every swap and compare, and check every step a
+    // StepTimeline records against its rebuilt map (-Dkl.verifyCuts=true)
+    static final boolean VERIFY_CUTS = Boolean.getBoolean("kl.verifyCuts");
+
+    private Refinement refinement = Refinement.KL;
+    private InitialPartition initial = InitialPartition.RANDOM;
+    private StepListener listener;
+    private int threads = 1;
+    private volatile boolean cancelled;
+    private boolean hasDeadline;
+    private long deadline;          // System.nanoTime() at which refinement stops, if hasDeadline
+    private volatile boolean stoppedAtDeadline;
+    private File checkpointFile;
+    private int checkpointEvery = 1;
+    private int checkpointLevel;
+    private long checkpointSeed;
+
+    // Refinement used for each pair of partitions, or KWAY for greedy moves between all parts
+    // at once (NONE keeps the initial partition)
+    public enum Refinement {
+        KL("Kernighan-Lin"),
+        FM("Fiduccia-Mattheyses"),
+        KWAY("Direct k-way"),
+        NONE("None");
+
+        private final String label;
+
+        Refinement(String label) {
+            this.label = label;
+        }
+
+        public String toString() {
+            return label;
+        }
+    }
+
+    // How run() builds the partition that refinement starts from
+    public enum InitialPartition {
+        RANDOM("Random"),
+        SPECTRAL("Spectral"),
+        LABEL_PROPAGATION("Label propagation");
+
+        private final String label;
+
+        InitialPartition(String label) {
+            this.label = label;
+        }
+
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Running cut count, updated from swap gains instead of rescanning the graph
+    static class CutTracker {
+        final int cutsBefore;
+        int cuts;
+
+        CutTracker(int cuts) {
+            this.cutsBefore = cuts;
+            this.cuts = cuts;
+        }
+
+        void verify(Graph g, int[] map) {
+            int actual = countCuts(g, map);
+            if (actual != cuts) {
+                throw new IllegalStateException("Cut tracker out of sync: tracked " + cuts
+                        + ", actual " + actual);
+            }
+        }
+    }
+
+    // FM gain buckets: one doubly linked list of vertices per gain value,
+    // so insert, remove, gain update and max lookup are all O(1). With heavy edge weights the
+    // gain range is too wide for an array of buckets; past MAX_BUCKET_GAIN the vertices go
+    // into a tree ordered by (gain, vertex) instead, at O(log n) per operation.
+    static class GainBuckets {
+        static final int MAX_BUCKET_GAIN = 1 << 16;
+
+        private final int offset;     // gain g is stored in bucket g + offset
+        private final int[] head;
+        private final int[] next;
+        private final int[] prev;
+        private final int[] gain;
+        private final TreeSet<Long> tree;   // (gain << 32 | v), or null with buckets
+        private int maxBucket = -1;
+
+        GainBuckets(int numVertices, int maxGain) {
+            this.gain = new int[numVertices];
+            if (maxGain > MAX_BUCKET_GAIN) {
+                this.offset = 0;
+                this.head = null;
+                this.next = null;
+                this.prev = null;
+                this.tree = new TreeSet<>();
+                return;
+            }
+            this.offset = maxGain;
+            this.head = new int[2 * maxGain + 1];
+            this.next = new int[numVertices];
+            this.prev = new int[numVertices];
+            this.tree = null;
+            java.util.Arrays.fill(head, -1);
+        }
+
+        void insert(int v, int g) {
+            gain[v] = g;
+            if (tree != null) {
+                tree.add((long) g << 32 | v);
+                return;
+            }
+            int b = g + offset;
+            prev[v] = -1;
+            next[v] = head[b];
+            if (head[b] != -1) prev[head[b]] = v;
+            head[b] = v;
+            if (b > maxBucket) maxBucket = b;
+        }
+
+        void remove(int v) {
+            if (tree != null) {
+                tree.remove((long) gain[v] << 32 | v);
+                return;
+            }
+            int b = gain[v] + offset;
+            if (prev[v] != -1) {
+                next[prev[v]] = next[v];
+            } else {
+                head[b] = next[v];
+            }
+            if (next[v] != -1) prev[next[v]] = prev[v];
+        }
+
+        void update(int v, int delta) {
+            remove(v);
+            insert(v, gain[v] + delta);
+        }
+
+        // Vertex with the highest gain, or -1 when empty
+        int top() {
+            if (tree != null) return tree.isEmpty() ? -1 : (int) (long) tree.last();
+            while (maxBucket >= 0 && head[maxBucket] == -1) maxBucket--;
+            return maxBucket < 0 ? -1 : head[maxBucket];
+        }
+
+        int gainOf(int v) {
+            return gain[v];
+        }
+    }
+
+    // Moves kept by one pair refinement, in order. A KL swap is one entry with both
+    // vertices, an FM move has v2 = -1. Every listed vertex changes to the other part of the pair.
+    static class MoveLog {
+        int size;
+        int[] v1 = new int[16];
+        int[] v2 = new int[16];
+        int[] gain = new int[16];
+        int[] iter = new int[16];
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(int a, int b, int g, int i) {
+            if (size == v1.length) {
+                int capacity = size * 2;
+                v1 = java.util.Arrays.copyOf(v1, capacity);
+                v2 = java.util.Arrays.copyOf(v2, capacity);
+                gain = java.util.Arrays.copyOf(gain, capacity);
+                iter = java.util.Arrays.copyOf(iter, capacity);
+            }
+            v1[size] = a;
+            v2[size] = b;
+            gain[size] = g;
+            iter[size] = i;
+            size++;
+        }
+
+        void applyTo(int[] map, int p1, int p2) {
+            for (int i = 0; i < size; i++) {
+                map[v1[i]] = map[v1[i]] == p1 ? p2 : p1;
+                if (v2[i] != -1) map[v2[i]] = map[v2[i]] == p1 ? p2 : p1;
+            }
+        }
+    }
+
+    public void setRefinement(Refinement refinement) {
+        this.refinement = refinement;
+    }
+
+    public void setInitialPartition(InitialPartition initial) {
+        this.initial = initial;
+    }
+
+    public InitialPartition getInitialPartition() {
+        return initial;
+    }
+
+    // Number of threads for refining disjoint partition pairs concurrently, and for the
+    // parallel sweeps of label propagation and Lanczos (1 = sequential)
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Receives every algorithm step; null (the default) disables step reporting entirely
+    public void setListener(StepListener listener) {
+        this.listener = listener;
+    }
+
+    public StepListener getListener() {
+        return listener;
+    }
+
+    // Ask a running refinement to stop, from any thread. The current pair keeps its best
+    // prefix so far, the pass loop ends, and run/refine return the partition as it stands.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Give the following run a time budget, counted from this call (0 removes the limit).
+    // Once it is used up the engine stops like on cancel(), even mid-pass or mid-pair, and
+    // returns the best partition reached: refinement only ever keeps improving moves.
+    public void setTimeBudget(long millis) {
+        hasDeadline = millis > 0;
+        deadline = System.nanoTime() + millis * 1_000_000;
+        stoppedAtDeadline = false;
+    }
+
+    // Whether the time budget actually cut work short since setTimeBudget: a run that ended
+    // within it reports false, even once the deadline has passed
+    public boolean stoppedAtDeadline() {
+        return stoppedAtDeadline;
+    }
+
+    // nanoTime may be negative and may wrap, so only the difference to it is compared
+    public boolean deadlinePassed() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    // Checked wherever a refinement may stop early: on cancel() or once the time budget is used up
+    boolean shouldStop() {
+        if (cancelled) return true;
+        if (!deadlinePassed()) return false;
+        stoppedAtDeadline = true;
+        return true;
+    }
+
+    // Write a Checkpoint to file after every everyPasses passes, and when a refinement ends or
+    // is cancelled; null (the default) disables checkpoints. resume() continues from one.
+    public void setCheckpoint(File file, int everyPasses) {
+        this.checkpointFile = file;
+        this.checkpointEvery = Math.max(1, everyPasses);
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public int getCheckpointEvery() {
+        return checkpointEvery;
+    }
+
+    // Multilevel runs tag their checkpoints with the level being refined and the seed that
+    // reproduces their coarsening
+    void setCheckpointLevel(int level, long seed) {
+        this.checkpointLevel = level;
+        this.checkpointSeed = seed;
+    }
+
+    // Report a step to the listener; callers check listener != null first so that
+    // descriptions are never formatted when nobody is listening
+    private void step(int[] map, int cuts, String description, int v1, int v2) {
+        listener.onStep(map, cuts, description, v1, v2);
+    }
+
+    // Partition g into numParts parts, starting from the configured initial partition. The
+    // seed is drawn here and shown in the first step, so that the run can be repeated.
+    public PartitionResult run(Graph g, int numParts, float margin) {
+        return run(g, numParts, margin, new SplittableRandom().nextLong());
+    }
+
+    // Same as run, but the initial partition is drawn from the given seed; equal seeds give
+    // equal partitions, whatever the thread count. The elapsed time includes the initial partition.
+    public PartitionResult run(Graph g, int numParts, float margin, long seed) {
+        long start = System.nanoTime();
+        checkpointSeed = seed;
+        checkpointLevel = 0;
+        PartitionResult result = refine(g, initialPartition(g, numParts, margin, new SplittableRandom(seed)),
+                numParts, margin, "Initial " + initial.label.toLowerCase() + " partition (seed " + seed + ")");
+        return new PartitionResult(result.partitionMap, numParts, result.cutEdges, result.passes,
+                System.nanoTime() - start);
+    }
+
+    // Continue a flat run from a checkpoint taken on g: refinement picks up after the
+    // checkpoint's pass with its map, margin and seed. A finished checkpoint is returned as is.
+    public PartitionResult resume(Graph g, Checkpoint checkpoint) {
+        checkpoint.validate(g.numVertices, checkpoint.numParts);
+        checkpointSeed = checkpoint.seed;
+        checkpointLevel = checkpoint.level;
+        String description = "Resumed after pass " + checkpoint.pass + " (seed " + checkpoint.seed + ")";
+        if (checkpoint.finished) {
+            int cuts = countCuts(g, checkpoint.map);
+            if (listener != null) step(checkpoint.map, cuts, description + ": already finished", -1, -1);
+            return new PartitionResult(checkpoint.map.clone(), checkpoint.numParts, cuts, checkpoint.pass, 0);
+        }
+        return refine(g, checkpoint.map, PartBalance.equalShares(checkpoint.numParts), checkpoint.margin,
+                description, checkpoint.pass);
+    }
+
+    private int[] initialPartition(Graph g, int numParts, float margin, SplittableRandom rand) {
+        if (initial == InitialPartition.SPECTRAL) return SpectralPartitioner.partition(g, numParts, rand, this);
+        if (initial == InitialPartition.LABEL_PROPAGATION) {
+            int[] map = LabelPropagation.blockPartition(g, PartBalance.equalShares(numParts));
+            LabelPropagation.propagate(g, map, new PartBalance(g, map, numParts, margin), threads, this);
+            return map;
+        }
+        return randomPartition(g.numVertices, numParts, rand);
+    }
+
+    // Improve an existing partition of g, starting from the given map
+    public PartitionResult refine(Graph g, int[] initialMap, int numParts, float margin,
+                                  String description) {
+        return refine(g, initialMap, PartBalance.equalShares(numParts), margin, description);
+    }
+
+    // Same as refine, but part p aims at shares[p] / sum(shares) of the total vertex weight
+    public PartitionResult refine(Graph g, int[] initialMap, int[] shares, float margin,
+                                  String description) {
+        return refine(g, initialMap, shares, margin, description, 0);
+    }
+
+    // Pass numbers continue from firstPass, which is non-zero when resuming a checkpoint
+    private PartitionResult refine(Graph g, int[] initialMap, int[] shares, float margin,
+                                   String description, int firstPass) {
+        long start = System.nanoTime();
+        int numParts = shares.length;
+        int[] map = initialMap.clone();
+
+        CutTracker tracker = new CutTracker(countCuts(g, map));
+        if (listener != null) step(map, tracker.cuts, description, -1, -1);
+
+        // Single-vertex moves must keep every part within margin percent of its ideal weight
+        PartBalance balance = new PartBalance(g, map, shares, margin);
+
+        // Direct k-way refinement replaces the pair schedule, whose rounds grow with k^2
+        KWayRefiner kway = refinement == Refinement.KWAY ? new KWayRefiner(g, map, balance) : null;
+        EdgeIndex edges = refinement == Refinement.KL ? new EdgeIndex(g) : null;
+        // A gain never exceeds the weighted degree of its vertex
+        int maxGain = refinement == Refinement.FM ? g.maxWeightedDegree() : 0;
+        int[][][] rounds = kway == null ? roundRobin(numParts) : new int[0][][];
+        MoveLog[] logs = new MoveLog[numParts / 2];
+        for (int i = 0; i < logs.length; i++) logs[i] = new MoveLog();
+        ForkJoinPool pool = threads > 1 && numParts >= 4 && kway == null ? new ForkJoinPool(threads) : null;
+
+        // Pairwise (or k-way) refinement
+        boolean improved = true;
+        int pass = firstPass;
+        int completedPasses = firstPass;   // a pass cut short by a stop is not complete
+
+        try {
+            while (improved && pass < MAX_PASSES && !shouldStop() && refinement != Refinement.NONE) {
+                improved = false;
+                pass++;
+                if (listener != null) step(map, tracker.cuts, "\n=== Pass " + pass + " ===", -1, -1);
+
+                if (kway != null) {
+                    if (listener != null) {
+                        step(map, tracker.cuts, kway.boundarySize() + " boundary vertices", -1, -1);
+                    }
+                    improved = kway.pass(this, tracker, pass, listener) > 0;
+                }
+                for (int[][] round : rounds) {
+                    if (shouldStop()) break;
+                    if (refineRound(g, edges, maxGain, map, round, logs, balance, tracker, pass, pool)) {
+                        improved = true;
+                        if (VERIFY_CUTS) tracker.verify(g, map);
+                    }
+                }
+
+                if (cancelled && listener != null) {
+                    step(map, tracker.cuts, "Cancelled in pass " + pass, -1, -1);
+                } else if (deadlinePassed() && listener != null) {
+                    step(map, tracker.cuts, "Time budget used up in pass " + pass, -1, -1);
+                } else if (!improved && listener != null) {
+                    step(map, tracker.cuts, "No improvement in pass " + pass, -1, -1);
+                }
+                if (shouldStop()) break;
+                completedPasses = pass;
+                // The last pass is covered by the checkpoint after the loop
+                if (checkpointFile != null && pass % checkpointEvery == 0 && improved && pass < MAX_PASSES) {
+                    writeCheckpoint(map, numParts, margin, pass, tracker.cuts, false);
+                }
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        // After a stop, resume repeats the interrupted pass on the map as it stands
+        if (checkpointFile != null) {
+            writeCheckpoint(map, numParts, margin, completedPasses, tracker.cuts, !cancelled && !stoppedAtDeadline);
+        }
+
+        if (listener != null) {
+            step(map, tracker.cuts, "\n=== Final: " + tracker.cuts + " cut edges ===", -1, -1);
+        }
+        return new PartitionResult(map, numParts, tracker.cuts, pass, System.nanoTime() - start);
+    }
+
+    private void writeCheckpoint(int[] map, int numParts, float margin, int pass, int cuts, boolean finished) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.numParts = numParts;
+        checkpoint.margin = margin;
+        checkpoint.level = checkpointLevel;
+        checkpoint.pass = pass;
+        checkpoint.cuts = cuts;
+        checkpoint.seed = checkpointSeed;
+        checkpoint.finished = finished;
+        checkpoint.map = map;
+        try {
+            checkpoint.write(checkpointFile);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Writing checkpoint " + checkpointFile + " failed", ex);
+        }
+    }
+
+    // Round-robin tournament schedule (circle method): every pair of parts appears exactly
+    // once, and the pairs within a round share no part
+    static int[][][] roundRobin(int numParts) {
+        int m = numParts % 2 == 0 ? numParts : numParts + 1;   // odd k gets a dummy part
+        int[][][] rounds = new int[m - 1][][];
+        for (int r = 0; r < m - 1; r++) {
+            List<int[]> pairs = new ArrayList<>();
+            for (int i = 0; i < m / 2; i++) {
+                int a = i == 0 ? m - 1 : (r + i) % (m - 1);
+                int b = (r + m - 1 - i) % (m - 1);
+                if (a >= numParts || b >= numParts) continue;
+                pairs.add(new int[]{Math.min(a, b), Math.max(a, b)});
+            }
+            rounds[r] = pairs.toArray(new int[0][]);
+        }
+        return rounds;
+    }
+
+    // Refine all pairs of one round in place. The pairs touch disjoint parts and their gains
+    // only depend on their own two parts: a pair writes only its own vertices and part sizes
+    // and only ever compares other entries of map against its own two parts, so the pairs can
+    // run at the same time on the shared map and their cut reductions simply add up.
+    private boolean refineRound(Graph g, EdgeIndex edges, int maxGain, int[] map, int[][] round,
+                                MoveLog[] logs, PartBalance balance, CutTracker tracker, int pass,
+                                ForkJoinPool pool) {
+        int roundCuts = tracker.cuts;
+        CutTracker[] trackers = new CutTracker[round.length];
+        boolean[] changed = new boolean[round.length];
+        for (int k = 0; k < round.length; k++) {
+            logs[k].clear();
+        }
+
+        // Verification recounts the whole map, which only adds up when pairs run one at a time
+        if (pool == null || round.length == 1 || VERIFY_CUTS) {
+            for (int k = 0; k < round.length; k++) {
+                trackers[k] = new CutTracker(tracker.cuts);
+                changed[k] = refineOnePair(g, edges, maxGain, map, round[k], logs[k], balance, trackers[k]);
+                tracker.cuts = trackers[k].cuts;
+            }
+        } else {
+            for (int k = 0; k < round.length; k++) {
+                trackers[k] = new CutTracker(roundCuts);
+            }
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int k = 0; k < round.length; k++) {
+                final int idx = k;
+                tasks.add(() -> refineOnePair(g, edges, maxGain, map, round[idx], logs[idx], balance,
+                        trackers[idx]));
+            }
+            List<Future<Boolean>> results = pool.invokeAll(tasks);
+            for (int k = 0; k < round.length; k++) {
+                try {
+                    changed[k] = results.get(k).get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Refinement interrupted", ex);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+                    throw new IllegalStateException(ex.getCause());
+                }
+                tracker.cuts -= trackers[k].cutsBefore - trackers[k].cuts;
+            }
+        }
+
+        boolean improved = false;
+        for (boolean c : changed) improved |= c;
+
+        if (improved && listener != null) {
+            // Every vertex in a log flips exactly once, so applying the logs again undoes the
+            // round; the moves are then replayed pair by pair with a step after each
+            for (int k = 0; k < round.length; k++) {
+                if (changed[k]) logs[k].applyTo(map, round[k][0], round[k][1]);
+            }
+            int cuts = roundCuts;
+            for (int k = 0; k < round.length; k++) {
+                if (changed[k]) cuts = emitMoves(map, logs[k], round[k][0], round[k][1], pass, cuts);
+            }
+        }
+        return improved;
+    }
+
+    private boolean refineOnePair(Graph g, EdgeIndex edges, int maxGain, int[] map, int[] pair,
+                                  MoveLog log, PartBalance balance, CutTracker tracker) {
+        return refinement == Refinement.FM
+                ? refineFM(g, maxGain, map, pair[0], pair[1], balance, tracker, log)
+                : refinePair(g, edges, map, pair[0], pair[1], balance, tracker, log);
+    }
+
+    // Apply the kept moves of one pair to map, reporting a step after each.
+    // Returns the cut count after the last move.
+    private int emitMoves(int[] map, MoveLog log, int p1, int p2, int pass, int cuts) {
+        for (int i = 0; i < log.size; i++) {
+            int v1 = log.v1[i], v2 = log.v2[i];
+            map[v1] = map[v1] == p1 ? p2 : p1;
+            if (v2 != -1) map[v2] = map[v2] == p1 ? p2 : p1;
+            cuts -= log.gain[i];
+            String description = v2 != -1
+                    ? String.format("Pass %d, pair(%d,%d), iter %d: swap %d<->%d gain=%d cuts=%d",
+                            pass, p1, p2, log.iter[i], v1, v2, log.gain[i], cuts)
+                    : String.format("Pass %d, pair(%d,%d), move %d: %d -> part %d gain=%d cuts=%d",
+                            pass, p1, p2, log.iter[i], v1, map[v1], log.gain[i], cuts);
+            step(map, cuts, description, v1, v2);
+        }
+        return cuts;
+    }
+
+    // Refine a pair of partitions in place. Every step either swaps two vertices or, when the
+    // balance window allows it and it gains more than the best swap, moves a single vertex.
+    // Each tentative step is applied to map and logged as (v1, v2, gain, cuts after), with
+    // v2 = -1 for a move; once the best prefix is known the steps after it are undone. On
+    // improvement the kept steps are recorded in log and the tracker is advanced to the new
+    // cut count.
+    boolean refinePair(Graph g, EdgeIndex edges, int[] map, int p1, int p2, PartBalance balance,
+                       CutTracker tracker, MoveLog log) {
+        int[] verts1 = verticesOf(map, p1);
+        int[] verts2 = verticesOf(map, p2);
+
+        // Every step locks at least one vertex
+        boolean[] locked = new boolean[g.numVertices];
+        int maxSteps = verts1.length + verts2.length;
+        int[] swapV1 = new int[maxSteps];
+        int[] swapV2 = new int[maxSteps];
+        int[] swapGain = new int[maxSteps];
+        int[] cutsAfter = new int[maxSteps];
+        int numSwaps = 0;
+
+        // D-values are computed once and then kept current after every step, and so is the
+        // order of each side's unlocked vertices: a step re-positions only the vertices whose
+        // D-value it changed, instead of sorting both sides again
+        int[] gains = computeGains(g, map, p1, p2, locked);
+        TreeSet<Long> order1 = new TreeSet<>();
+        TreeSet<Long> order2 = new TreeSet<>();
+        for (int v : verts1) order1.add(gainKey(gains, v));
+        for (int v : verts2) order2.add(gainKey(gains, v));
+        int cuts = tracker.cuts;
+
+        // Generate all steps
+        for (int iter = 0; iter < maxSteps && !shouldStop(); iter++) {
+            int bestV1 = -1, bestV2 = -1, maxGain = Integer.MIN_VALUE;
+
+            // Candidates are sorted by D-value, and D(v1) + D(v2) bounds the gain of a pair
+            // (the edge cost is never negative). Once the bound drops below the best gain no
+            // later pair can win, so the scan stops. Equal gains still go to the smallest
+            // (v1, v2), exactly as the full scan in vertex order would pick. Within equal
+            // D-values the ids ascend, so the scan also stops once the bound only equals the
+            // best gain and the ids have passed the best pair's: on graphs with few distinct
+            // D-values this skips the large groups of pairs that tie with the best one.
+            int top2 = order2.isEmpty() ? 0 : gains[(int) (long) order2.first()];
+            for (long key1 : order1) {
+                if (order2.isEmpty()) break;
+                int v1 = (int) key1;
+                int bound1 = gains[v1] + top2;
+                if (bound1 < maxGain || (bound1 == maxGain && v1 > bestV1)) break;
+                for (long key2 : order2) {
+                    int v2 = (int) key2;
+                    int bound = gains[v1] + gains[v2];
+                    if (bound < maxGain || (bound == maxGain
+                            && (v1 > bestV1 || (v1 == bestV1 && v2 > bestV2)))) {
+                        break;
+                    }
+
+                    if (!balance.canSwap(p1, p2, g.vertexWeight(v1), g.vertexWeight(v2))) continue;
+                    int cost = 2 * edges.weight(v1, v2);
+                    int gain = bound - cost;
+
+                    if (gain > maxGain || (gain == maxGain
+                            && (v1 < bestV1 || (v1 == bestV1 && v2 < bestV2)))) {
+                        maxGain = gain;
+                        bestV1 = v1;
+                        bestV2 = v2;
+                    }
+                }
+            }
+
+            // The best single move on each side is the head of its order; between equal
+            // gains the larger part gives up the vertex
+            int moveV = -1, moveGain = Integer.MIN_VALUE;
+            if (!order1.isEmpty() && balance.canMove(p1, p2, g.vertexWeight((int) (long) order1.first()))) {
+                moveV = (int) (long) order1.first();
+                moveGain = gains[moveV];
+            }
+            if (!order2.isEmpty() && balance.canMove(p2, p1, g.vertexWeight((int) (long) order2.first()))) {
+                int v2 = (int) (long) order2.first();
+                if (gains[v2] > moveGain
+                        || (gains[v2] == moveGain && balance.sizes[p2] > balance.sizes[p1])) {
+                    moveV = v2;
+                    moveGain = gains[v2];
+                }
+            }
+
+            if (moveV != -1 && (bestV1 == -1 || moveGain > maxGain)) {
+                int from = map[moveV], to = from == p1 ? p2 : p1;
+                (from == p1 ? order1 : order2).remove(gainKey(gains, moveV));
+                updateOrdered(g, map, gains, locked, moveV, to, p1, order1, order2);
+                map[moveV] = to;
+                locked[moveV] = true;
+                balance.move(from, to, g.vertexWeight(moveV));
+                bestV1 = moveV;
+                bestV2 = -1;
+                maxGain = moveGain;
+            } else if (bestV1 != -1) {
+                order1.remove(gainKey(gains, bestV1));
+                order2.remove(gainKey(gains, bestV2));
+                locked[bestV1] = true;
+                locked[bestV2] = true;
+                updateOrdered(g, map, gains, locked, bestV1, p2, p1, order1, order2);
+                map[bestV1] = p2;
+                updateOrdered(g, map, gains, locked, bestV2, p1, p1, order1, order2);
+                map[bestV2] = p1;
+                balance.move(p1, p2, g.vertexWeight(bestV1) - g.vertexWeight(bestV2));
+            } else {
+                break;
+            }
+
+            // The gain is exactly the change in cut edges
+            cuts -= maxGain;
+            if (VERIFY_CUTS) new CutTracker(cuts).verify(g, map);
+            swapV1[numSwaps] = bestV1;
+            swapV2[numSwaps] = bestV2;
+            swapGain[numSwaps] = maxGain;
+            cutsAfter[numSwaps] = cuts;
+            numSwaps++;
+        }
+
+        // Find best prefix (classic KL)
+        int bestSwaps = 0;
+        int bestCuts = tracker.cuts;
+
+        for (int i = 0; i < numSwaps; i++) {
+            if (cutsAfter[i] < bestCuts) {
+                bestCuts = cutsAfter[i];
+                bestSwaps = i + 1;
+            }
+        }
+
+        // Undo the steps past the best prefix
+        for (int i = numSwaps - 1; i >= bestSwaps; i--) {
+            int v1 = swapV1[i], v2 = swapV2[i];
+            if (v2 == -1) {
+                int from = map[v1], to = from == p1 ? p2 : p1;
+                map[v1] = to;
+                balance.move(from, to, g.vertexWeight(v1));
+            } else {
+                map[v1] = p1;
+                map[v2] = p2;
+                balance.move(p2, p1, g.vertexWeight(v1) - g.vertexWeight(v2));
+            }
+        }
+
+        for (int i = 0; i < bestSwaps; i++) {
+            log.add(swapV1[i], swapV2[i], swapGain[i], i);
+        }
+        tracker.cuts = bestCuts;
+        return bestSwaps > 0;
+    }
+
+    static int[] verticesOf(int[] map, int part) {
+        int count = 0;
+        for (int p : map) {
+            if (p == part) count++;
+        }
+        int[] verts = new int[count];
+        int idx = 0;
+        for (int v = 0; v < map.length; v++) {
+            if (map[v] == part) verts[idx++] = v;
+        }
+        return verts;
+    }
+
+    // Key of v in refinePair's side orders: packs (-D, v) into one long, so ascending keys
+    // run by D-value descending, then vertex id
+    static long gainKey(int[] gains, int v) {
+        return ((long) -gains[v] << 32) | v;
+    }
+
+    // updateGains for refinePair: the unlocked neighbors of v in the pair (the only D-values
+    // it changes) leave their side's order before the update and return with their new key.
+    // p1 is the pair's first part, whose vertices are in order1.
+    private static void updateOrdered(Graph g, int[] map, int[] gains, boolean[] locked, int v, int to,
+                                      int p1, TreeSet<Long> order1, TreeSet<Long> order2) {
+        int from = map[v];
+        for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+            int neighbor = g.adjacency[i];
+            if (locked[neighbor] || (map[neighbor] != from && map[neighbor] != to)) continue;
+            (map[neighbor] == p1 ? order1 : order2).remove(gainKey(gains, neighbor));
+        }
+        updateGains(g, map, gains, locked, v, to);
+        for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+            int neighbor = g.adjacency[i];
+            if (locked[neighbor] || (map[neighbor] != from && map[neighbor] != to)) continue;
+            (map[neighbor] == p1 ? order1 : order2).add(gainKey(gains, neighbor));
+        }
+    }
+
+    // Refine a pair of partitions with Fiduccia-Mattheyses single-vertex moves.
+    // Gains live in bucket lists, so choosing and applying a move is O(1) plus the
+    // mover's degree, and one pass is linear in |E|. Like refinePair it works in place on map.
+    // maxGain bounds every gain (the largest weighted degree) and is computed once per refine.
+    boolean refineFM(Graph g, int maxGain, int[] map, int p1, int p2, PartBalance balance,
+                     CutTracker tracker, MoveLog log) {
+        boolean[] locked = new boolean[g.numVertices];
+        int[] gains = computeGains(g, map, p1, p2, locked);
+
+        GainBuckets side1 = new GainBuckets(g.numVertices, maxGain);
+        GainBuckets side2 = new GainBuckets(g.numVertices, maxGain);
+        int pairVertices = 0;
+        for (int v = 0; v < g.numVertices; v++) {
+            if (map[v] == p1) side1.insert(v, gains[v]);
+            if (map[v] == p2) side2.insert(v, gains[v]);
+            if (map[v] == p1 || map[v] == p2) pairVertices++;
+        }
+
+        int[] moved = new int[pairVertices];
+        int[] movedGain = new int[moved.length];
+        int numMoves = 0;
+        int cuts = tracker.cuts;
+        int bestCuts = tracker.cuts;
+        int bestMoves = 0;
+
+        while (!shouldStop()) {
+            // Only the top of each side is a candidate; a side whose top does not fit the
+            // balance window sits this move out
+            int c1 = side1.top();
+            int c2 = side2.top();
+            if (c1 != -1 && !balance.canMove(p1, p2, g.vertexWeight(c1))) c1 = -1;
+            if (c2 != -1 && !balance.canMove(p2, p1, g.vertexWeight(c2))) c2 = -1;
+            if (c1 == -1 && c2 == -1) break;
+
+            boolean fromFirst;
+            if (c1 == -1) {
+                fromFirst = false;
+            } else if (c2 == -1) {
+                fromFirst = true;
+            } else if (side1.gainOf(c1) != side2.gainOf(c2)) {
+                fromFirst = side1.gainOf(c1) > side2.gainOf(c2);
+            } else {
+                fromFirst = balance.sizes[p1] >= balance.sizes[p2];
+            }
+
+            int v = fromFirst ? c1 : c2;
+            int from = fromFirst ? p1 : p2;
+            int to = fromFirst ? p2 : p1;
+            int gain = fromFirst ? side1.gainOf(v) : side2.gainOf(v);
+            (fromFirst ? side1 : side2).remove(v);
+            locked[v] = true;
+
+            // Neighbors on the mover's old side gain twice the edge weight, neighbors on its
+            // new side lose it
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                int neighbor = g.adjacency[i];
+                if (locked[neighbor]) continue;
+                if (map[neighbor] == from) {
+                    (fromFirst ? side1 : side2).update(neighbor, 2 * g.edgeWeight(i));
+                } else if (map[neighbor] == to) {
+                    (fromFirst ? side2 : side1).update(neighbor, -2 * g.edgeWeight(i));
+                }
+            }
+
+            map[v] = to;
+            balance.move(from, to, g.vertexWeight(v));
+
+            cuts -= gain;
+            if (VERIFY_CUTS) new CutTracker(cuts).verify(g, map);
+            moved[numMoves] = v;
+            movedGain[numMoves] = gain;
+            numMoves++;
+
+            if (cuts < bestCuts) {
+                bestCuts = cuts;
+                bestMoves = numMoves;
+            }
+        }
+
+        // Undo the moves past the best prefix
+        for (int i = numMoves - 1; i >= bestMoves; i--) {
+            int v = moved[i];
+            int from = map[v], to = from == p1 ? p2 : p1;
+            map[v] = to;
+            balance.move(from, to, g.vertexWeight(v));
+        }
+
+        if (bestMoves == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < bestMoves; i++) {
+            log.add(moved[i], -1, movedGain[i], i);
+        }
+        tracker.cuts = bestCuts;
+        return true;
+    }
+
+    // Compute gain for each vertex: weight of its edges into the other partition minus weight
+    // of those inside its own. Edges into third partitions stay cut either way and do not count.
+    static int[] computeGains(Graph g, int[] map, int p1, int p2, boolean[] locked) {
+        int[] gains = new int[g.numVertices];
+
+        for (int v = 0; v < g.numVertices; v++) {
+            if (locked[v] || (map[v] != p1 && map[v] != p2)) {
+                continue;
+            }
+
+            int internal = 0, external = 0;
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                int neighbor = g.adjacency[i];
+                if (map[v] == map[neighbor]) {
+                    internal += g.edgeWeight(i);
+                } else if (map[neighbor] == p1 || map[neighbor] == p2) {
+                    external += g.edgeWeight(i);
+                }
+            }
+            gains[v] = external - internal;
+        }
+        return gains;
+    }
+
+    // Update D-values for moving v into part to, before the map changes. Only neighbors of v
+    // are touched: an edge to the moving vertex flips between internal and external, so the
+    // neighbor's D-value changes by twice the edge weight. A swap is two such moves, with both vertices locked
+    // first so the edge between them is left alone.
+    static void updateGains(Graph g, int[] map, int[] gains, boolean[] locked, int v, int to) {
+        int from = map[v];
+        for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+            int neighbor = g.adjacency[i];
+            if (locked[neighbor]) continue;
+            if (map[neighbor] == from) {
+                gains[neighbor] += 2 * g.edgeWeight(i);
+            } else if (map[neighbor] == to) {
+                gains[neighbor] -= 2 * g.edgeWeight(i);
+            }
+        }
+    }
+
+    // Helper methods
+    static int[] randomPartition(int n, int parts, long seed) {
+        return randomPartition(n, parts, new SplittableRandom(seed));
+    }
+
+    static int[] randomPartition(int n, int parts, SplittableRandom rand) {
+        int[] map = new int[n];
+        int[] order = randomOrder(n, rand);
+        for (int i = 0; i < n; i++) {
+            map[order[i]] = i % parts;
+        }
+        return map;
+    }
+
+    // The vertices 0 .. n - 1 in random order (Fisher-Yates shuffle)
+    static int[] randomOrder(int n, SplittableRandom rand) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    // Total weight of the edges between different parts (the edge count for unweighted graphs)
+    static int countCuts(Graph g, int[] map) {
+        int cuts = 0;
+        for (int u = 0; u < g.numVertices; u++) {
+            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                int v = g.adjacency[i];
+                if (u < v && map[u] != map[v]) {
+                    cuts += g.edgeWeight(i);
+                }
+            }
+        }
+        return cuts;
+    }
+}
@@ -0,0 +1,45 @@
+// Outcome of a partitioning run: the partition map plus quality and cost metrics
+public class PartitionResult {
+    final int[] partitionMap;
+    final int numParts;
+    final int cutEdges;
+    final int passes;
+    final long elapsedNanos;
+
+    PartitionResult(int[] map, int numParts, int cuts, int passes, long elapsedNanos) {
+        this.partitionMap = map;
+        this.numParts = numParts;
+        this.cutEdges = cuts;
+        this.passes = passes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Total vertex weight of each part (the vertex count for unweighted graphs)
+    int[] partWeights(Graph g) {
+        return partWeights(g.vertexWeights);
+    }
+
+    // Same, from a vertex weight array that is null when every vertex weighs 1
+    int[] partWeights(int[] vertexWeights) {
+        int[] weights = new int[numParts];
+        for (int v = 0; v < partitionMap.length; v++) {
+            weights[partitionMap[v]] += vertexWeights == null ? 1 : vertexWeights[v];
+        }
+        return weights;
+    }
+
+    // Heaviest part relative to the ideal weight W/k (1.0 = perfectly balanced)
+    double imbalance(Graph g) {
+        return imbalance(g.vertexWeights);
+    }
+
+    double imbalance(int[] vertexWeights) {
+        int max = 0;
+        long total = 0;
+        for (int weight : partWeights(vertexWeights)) {
+            max = Math.max(max, weight);
+            total += weight;
+        }
+        return max * (double) numParts / total;
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.File;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recursive bisection: splits the graph in two with the engine's 2-way refinement, builds the
+ * induced CSR subgraph of each half and bisects those again until k parts remain. Only
+ * k - 1 bisections are refined, log2(k) levels deep, instead of k(k-1)/2 pairs per pass,
+ * and the two subtrees below a bisection share nothing, so they run in parallel on a
+ * ForkJoinPool. For odd part counts a subgraph is split in proportion k/2 : k - k/2.
+ */
+public class RecursiveBisection {
+
+    private final PartitionEngine engine;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // One finished bisection, kept only to replay the steps to a listener
+    private static class Split {
+        int[] vertices;     // original ids of the subgraph's vertices
+        int[] sides;        // 0 or 1 per subgraph vertex
+        int firstPart;
+        int leftParts;
+        int parts;
+        int cuts;
+    }
+
+    public RecursiveBisection(PartitionEngine engine) {
+        this.engine = engine;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public PartitionResult run(Graph g, int numParts, float margin) {
+        return run(g, numParts, margin, new SplittableRandom().nextLong());
+    }
+
+    // Same as run with a fixed seed. Every bisection draws from its own stream, split off its
+    // parent's, so the result does not depend on how the tasks are scheduled.
+    public PartitionResult run(Graph g, int numParts, float margin, long seed) {
+        long start = System.nanoTime();
+        int n = g.numVertices;
+
+        // Imbalance compounds over the levels, so each level gets the matching share of the margin
+        int levels = 32 - Integer.numberOfLeadingZeros(numParts - 1);
+        float levelMargin = (float) (100 * (Math.pow(1 + margin / 100.0, 1.0 / levels) - 1));
+
+        int[] map = new int[n];
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) all[v] = v;
+        AtomicInteger passes = new AtomicInteger();
+
+        StepListener listener = engine.getListener();
+        Split[] recorded = listener != null ? new Split[Math.max(1, numParts - 1)] : null;
+
+        // Bisections run concurrently, so the engine reports nothing until they are done, and
+        // their subgraph partitions are no use as checkpoints of the whole run
+        engine.setListener(null);
+        File checkpointFile = engine.getCheckpointFile();
+        int checkpointEvery = engine.getCheckpointEvery();
+        engine.setCheckpoint(null, 1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Bisect(g, all, 0, numParts, levelMargin, new SplittableRandom(seed), map, passes,
+                    recorded, 0));
+        } finally {
+            pool.shutdown();
+            engine.setListener(listener);
+            engine.setCheckpoint(checkpointFile, checkpointEvery);
+        }
+
+        // The per-level windows leave up to one vertex of slack each, which can add up on deep
+        // trees with heavy vertices; fix any part still outside the overall window
+        MultilevelPartitioner.rebalance(g, map, numParts, margin);
+
+        int cuts = PartitionEngine.countCuts(g, map);
+        if (listener != null) replay(listener, recorded, map, cuts);
+        return new PartitionResult(map, numParts, cuts, passes.get(), System.nanoTime() - start);
+    }
+
+    // Bisect one subgraph holding parts [firstPart, firstPart + parts), then recurse on both halves
+    private class Bisect extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Graph sub;
+        final int[] vertices;
+        final int firstPart;
+        final int parts;
+        final float margin;
+        final SplittableRandom rand;
+        final int[] map;
+        final AtomicInteger passes;
+        final Split[] recorded;
+        final int node;     // preorder number of this bisection, for the replay order
+
+        Bisect(Graph sub, int[] vertices, int firstPart, int parts, float margin, SplittableRandom rand,
+               int[] map, AtomicInteger passes, Split[] recorded, int node) {
+            this.sub = sub;
+            this.vertices = vertices;
+            this.firstPart = firstPart;
+            this.parts = parts;
+            this.margin = margin;
+            this.rand = rand;
+            this.map = map;
+            this.passes = passes;
+            this.recorded = recorded;
+            this.node = node;
+        }
+
+        protected void compute() {
+            if (parts == 1) {
+                for (int v : vertices) map[v] = firstPart;
+                return;
+            }
+
+            int leftParts = parts / 2;
+            int[] shares = {leftParts, parts - leftParts};
+            double[] order;
+            if (engine.getInitialPartition() == PartitionEngine.InitialPartition.SPECTRAL) {
+                order = SpectralPartitioner.fiedlerVector(sub, rand, engine);
+            } else if (engine.getInitialPartition() == PartitionEngine.InitialPartition.LABEL_PROPAGATION) {
+                // Subgraph ids keep the original order, so this is LabelPropagation.blockPartition
+                order = new double[sub.numVertices];
+                for (int v = 0; v < order.length; v++) order[v] = v;
+            } else {
+                order = new double[sub.numVertices];
+                for (int v = 0; v < order.length; v++) order[v] = rand.nextDouble();
+            }
+            int[] initial = SpectralPartitioner.splitByOrder(sub, order, shares);
+            if (engine.getInitialPartition() == PartitionEngine.InitialPartition.LABEL_PROPAGATION) {
+                LabelPropagation.propagate(sub, initial, new PartBalance(sub, initial, shares, margin), threads, engine);
+            }
+            PartitionResult result = engine.refine(sub, initial, shares, margin, null);
+            passes.addAndGet(result.passes);
+
+            if (recorded != null) {
+                Split s = new Split();
+                s.vertices = vertices;
+                s.sides = result.partitionMap;
+                s.firstPart = firstPart;
+                s.leftParts = leftParts;
+                s.parts = parts;
+                s.cuts = result.cutEdges;
+                recorded[node] = s;
+            }
+
+            // Streams for the halves are split off here, so they do not depend on scheduling
+            SplittableRandom leftRand = rand.split();
+            SplittableRandom rightRand = rand.split();
+            Graph[] halves = new Graph[2];
+            int[][] ids = new int[2][];
+            split(sub, vertices, result.partitionMap, halves, ids);
+
+            // Preorder numbering: the left subtree holds leftParts - 1 bisections
+            Bisect left = new Bisect(halves[0], ids[0], firstPart, leftParts, margin, leftRand,
+                    map, passes, recorded, node + 1);
+            Bisect right = new Bisect(halves[1], ids[1], firstPart + leftParts, parts - leftParts,
+                    margin, rightRand, map, passes, recorded, node + leftParts);
+            invokeAll(left, right);
+        }
+    }
+
+    // Build the induced subgraphs of both sides of a bisection, keeping vertex and edge
+    // weights. ids[s] maps the vertices of halves[s] back to original vertex ids.
+    static void split(Graph g, int[] vertices, int[] sides, Graph[] halves, int[][] ids) {
+        int n = g.numVertices;
+        int[] local = new int[n];
+        int[] count = new int[2];
+        int[] entries = new int[2];
+        for (int v = 0; v < n; v++) {
+            local[v] = count[sides[v]]++;
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                if (sides[g.adjacency[i]] == sides[v]) entries[sides[v]]++;
+            }
+        }
+
+        for (int s = 0; s < 2; s++) {
+            Graph h = new Graph();
+            h.numVertices = count[s];
+            h.pointers = new int[count[s] + 1];
+            h.adjacency = new int[entries[s]];
+            if (g.edgeWeights != null) h.edgeWeights = new int[entries[s]];
+            if (g.vertexWeights != null) h.vertexWeights = new int[count[s]];
+            halves[s] = h;
+            ids[s] = new int[count[s]];
+        }
+
+        int[] fill = new int[2];
+        for (int v = 0; v < n; v++) {
+            int s = sides[v];
+            Graph h = halves[s];
+            int lv = local[v];
+            ids[s][lv] = vertices[v];
+            h.pointers[lv] = fill[s];
+            if (h.vertexWeights != null) h.vertexWeights[lv] = g.vertexWeights[v];
+            // Rows stay sorted: local ids keep the order of the original ids
+            for (int i = g.pointers[v]; i < g.pointers[v + 1]; i++) {
+                int u = g.adjacency[i];
+                if (sides[u] != s) continue;
+                h.adjacency[fill[s]] = local[u];
+                if (h.edgeWeights != null) h.edgeWeights[fill[s]] = g.edgeWeights[i];
+                fill[s]++;
+            }
+        }
+        halves[0].pointers[count[0]] = fill[0];
+        halves[1].pointers[count[1]] = fill[1];
+    }
+
+    // Report the bisections in preorder, starting from everything in part 0. Each bisection
+    // turns its cut edges into cut edges of the whole graph, so the cut count just adds up.
+    private static void replay(StepListener listener, Split[] splits, int[] finalMap, int finalCuts) {
+        int[] map = new int[finalMap.length];
+        int cuts = 0;
+        listener.onStep(map, cuts, "Initial: all vertices in part 0", -1, -1);
+        for (Split s : splits) {
+            if (s == null) continue;
+            for (int i = 0; i < s.vertices.length; i++) {
+                if (s.sides[i] == 1) map[s.vertices[i]] = s.firstPart + s.leftParts;
+            }
+            cuts += s.cuts;
+            listener.onStep(map, cuts, String.format("Bisect parts %d-%d (%d vertices) into %d + %d parts: cut %d, total %d",
+                    s.firstPart, s.firstPart + s.parts - 1, s.vertices.length, s.leftParts,
+                    s.parts - s.leftParts, s.cuts, cuts), -1, -1);
+        }
+        listener.onStep(finalMap, finalCuts, "\n=== Final: " + finalCuts + " cut edges ===", -1, -1);
+    }
+}
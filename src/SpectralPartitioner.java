@@ -0,0 +1,326 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Spectral partitioner: computes the Fiedler vector (eigenvector of the second-smallest
+ * eigenvalue) of the weighted graph Laplacian L = D - W with a restarted Lanczos iteration,
+ * then orders the vertices by their Fiedler value and cuts that order into k parts of
+ * equal vertex weight (the median for a bisection). Vertices close in the Fiedler order
+ * tend to be close in the graph, so this is a far better start than a random partition on
+ * mesh-like graphs. The Laplacian is never built; every product works on the CSR arrays.
+ */
+public class SpectralPartitioner {
+
+    // Lanczos vectors kept per restart (memory is about this many copies of an n-vector)
+    static final int KRYLOV_SIZE = 40;
+    static final int MAX_RESTARTS = 30;
+    // Larger graphs get their start vector from a heavy-edge coarsened copy (see fiedlerVector)
+    static final int COARSEN_ABOVE = 2000;
+    // Stop once the Ritz residual drops below this fraction of the spectrum's upper bound
+    static final double TOLERANCE = 1e-6;
+    // Mat-vecs and reorthogonalization are split over engine.getThreads() threads from this
+    // many adjacency entries (resp. a quarter as many vertices) on
+    static final int PARALLEL_MIN_ENTRIES = 200_000;
+    static final int ROWS_PER_TASK = 4096;
+
+    // Partition g into numParts parts along its Fiedler vector. Once engine.shouldStop(), the
+    // vector found so far is used.
+    static int[] partition(Graph g, int numParts, SplittableRandom rand, PartitionEngine engine) {
+        return splitByOrder(g, fiedlerVector(g, rand, engine), PartBalance.equalShares(numParts));
+    }
+
+    // Cut the vertices, sorted by value (ties by id), into consecutive runs, run p holding
+    // shares[p] / sum(shares) of the total vertex weight
+    static int[] splitByOrder(Graph g, double[] values, int[] shares) {
+        int n = g.numVertices;
+        // Sort (value rounded to float, id) packed into one long, which is a primitive sort;
+        // rounding keeps the order, so only runs with the same float need the exact values
+        long[] keys = new long[n];
+        for (int v = 0; v < n; v++) {
+            int bits = Float.floatToIntBits((float) values[v]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;   // signed int order = float order
+            keys[v] = (long) bits << 32 | v;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+        for (int i = 0, j; i < n; i = j) {
+            for (j = i + 1; j < n && keys[j] >> 32 == keys[i] >> 32; j++) { }
+            if (j - i > 1) sortRun(order, i, j, values);
+        }
+        return splitInOrder(g, order, shares);
+    }
+
+    // Order order[from, to) by value, ties by id
+    private static void sortRun(int[] order, int from, int to, double[] values) {
+        Integer[] run = new Integer[to - from];
+        for (int i = from; i < to; i++) run[i - from] = order[i];
+        Arrays.sort(run, (a, b) -> {
+            int c = Double.compare(values[a], values[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        for (int i = from; i < to; i++) order[i] = run[i - from];
+    }
+
+    // Cut the vertices, taken in the given order, into consecutive runs as above
+    static int[] splitInOrder(Graph g, int[] order, int[] shares) {
+        int n = g.numVertices;
+        long shareSum = 0;
+        for (int share : shares) shareSum += share;
+        int[] map = new int[n];
+        long total = g.totalVertexWeight();
+        long seen = 0;
+        long boundary = shares[0];   // cumulative share up to and including the current part
+        int part = 0;
+        for (int v : order) {
+            // Vertex v goes to the part its weight midpoint falls into
+            long mid = 2 * seen + g.vertexWeight(v);
+            while (part < shares.length - 1 && mid * shareSum > 2 * total * boundary) {
+                part++;
+                boundary += shares[part];
+            }
+            map[v] = part;
+            seen += g.vertexWeight(v);
+        }
+        return map;
+    }
+
+    // Fiedler vector of g. Lanczos needs many iterations on large meshes, where the second
+    // eigenvalue sits very close to zero, so large graphs are first coarsened by heavy-edge
+    // matching; the coarse Fiedler vector, copied back onto the vertices merged into each
+    // coarse vertex, starts Lanczos on g close to the answer (multilevel spectral bisection).
+    static double[] fiedlerVector(Graph g, SplittableRandom rand, PartitionEngine engine) {
+        int n = g.numVertices;
+        double[] x = null;
+        if (n > COARSEN_ABOVE && !engine.shouldStop()) {
+            MultilevelPartitioner.Level fine = new MultilevelPartitioner.Level();
+            fine.graph = g;
+            MultilevelPartitioner.Level coarse = MultilevelPartitioner.coarsen(fine, rand, engine);
+            if (coarse != null && coarse.graph.numVertices <= MultilevelPartitioner.MIN_REDUCTION * n) {
+                double[] coarseVector = fiedlerVector(coarse.graph, rand, engine);
+                x = new double[n];
+                for (int v = 0; v < n; v++) x[v] = coarseVector[coarse.coarseOf[v]];
+            }
+        }
+        if (x == null) {
+            x = new double[n];
+            for (int v = 0; v < n; v++) x[v] = rand.nextDouble() - 0.5;
+        }
+        return lanczos(g, x, engine);
+    }
+
+    // Lanczos with full reorthogonalization, restarted from the current Ritz vector.
+    // Every Lanczos vector is kept orthogonal to the constant vector, which deflates the
+    // zero eigenvalue, so the smallest Ritz value tracks the second eigenvalue. When
+    // engine.shouldStop(), the Ritz vector of the steps taken so far is returned; its
+    // subspace holds the previous x, so it is never worse.
+    static double[] lanczos(Graph g, double[] x, PartitionEngine engine) {
+        int n = g.numVertices;
+        double[] degree = weightedDegrees(g);
+        double maxDegree = 0;
+        for (double d : degree) maxDegree = Math.max(maxDegree, d);
+        double bound = Math.max(2 * maxDegree, 1);   // Gershgorin bound on the spectrum
+
+        if (n < 3) return x;
+        removeMean(x);
+        normalize(x);
+
+        int m = Math.min(KRYLOV_SIZE, n - 1);
+        double[][] basis = new double[m][];
+        double[] alpha = new double[m];
+        double[] beta = new double[m];
+        double[] w = new double[n];
+        boolean large = g.adjacency.length >= PARALLEL_MIN_ENTRIES || n >= PARALLEL_MIN_ENTRIES / 4;
+        ForkJoinPool pool = engine.getThreads() > 1 && large ? new ForkJoinPool(engine.getThreads()) : null;
+
+        try {
+            for (int restart = 0; restart < MAX_RESTARTS && !engine.shouldStop(); restart++) {
+                basis[0] = x.clone();
+                int steps = 0;
+                for (int j = 0; j < m; j++) {
+                    if (j > 0 && engine.shouldStop()) break;
+                    multiply(g, degree, basis[j], w, pool);
+                    alpha[j] = dot(w, basis[j]);
+                    steps = j + 1;
+
+                    // Three-term recurrence, then one full reorthogonalization pass against every
+                    // Lanczos vector; a second pass is only needed when the first one cancelled
+                    // most of w (DGKS criterion)
+                    axpy(-alpha[j], basis[j], w);
+                    if (j > 0) axpy(-beta[j - 1], basis[j - 1], w);
+                    removeMean(w);
+                    double before = Math.sqrt(dot(w, w));
+                    orthogonalize(w, basis, j + 1, pool);
+                    beta[j] = Math.sqrt(dot(w, w));
+                    if (beta[j] < 0.7 * before) {
+                        removeMean(w);
+                        orthogonalize(w, basis, j + 1, pool);
+                        beta[j] = Math.sqrt(dot(w, w));
+                    }
+                    if (j + 1 == m || beta[j] < 1e-12 * bound) break;
+                    if (basis[j + 1] == null) basis[j + 1] = new double[n];
+                    for (int v = 0; v < n; v++) basis[j + 1][v] = w[v] / beta[j];
+                }
+
+                // Smallest eigenpair of the tridiagonal matrix T = tridiag(beta, alpha, beta)
+                double[][] z = new double[steps][steps];
+                double[] d = Arrays.copyOf(alpha, steps);
+                double[] e = new double[steps];
+                System.arraycopy(beta, 0, e, 0, steps - 1);
+                for (int i = 0; i < steps; i++) z[i][i] = 1;
+                tridiagonalEigen(d, e, z);
+                int smallest = 0;
+                for (int i = 1; i < steps; i++) {
+                    if (d[i] < d[smallest]) smallest = i;
+                }
+
+                // Ritz vector x = V s; its residual norm is |beta_last * s_last|
+                Arrays.fill(x, 0);
+                for (int i = 0; i < steps; i++) axpy(z[i][smallest], basis[i], x);
+                removeMean(x);
+                normalize(x);
+                double residual = Math.abs(beta[steps - 1] * z[steps - 1][smallest]);
+                if (residual < TOLERANCE * bound || steps < m) break;
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+        return x;
+    }
+
+    static double[] weightedDegrees(Graph g) {
+        double[] degree = new double[g.numVertices];
+        for (int u = 0; u < g.numVertices; u++) {
+            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) degree[u] += g.edgeWeight(i);
+        }
+        return degree;
+    }
+
+    // y = L x = D x - W x, row by row; large graphs split the rows over pool (null = sequential)
+    static void multiply(Graph g, double[] degree, double[] x, double[] y, ForkJoinPool pool) {
+        int n = g.numVertices;
+        if (pool == null || g.adjacency.length < PARALLEL_MIN_ENTRIES) {
+            multiplyRows(g, degree, x, y, 0, n);
+            return;
+        }
+        int tasks = (n + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(t ->
+                multiplyRows(g, degree, x, y, t * ROWS_PER_TASK, Math.min(n, (t + 1) * ROWS_PER_TASK)))).join();
+    }
+
+    private static void multiplyRows(Graph g, double[] degree, double[] x, double[] y, int from, int to) {
+        for (int u = from; u < to; u++) {
+            double sum = degree[u] * x[u];
+            for (int i = g.pointers[u]; i < g.pointers[u + 1]; i++) {
+                sum -= g.edgeWeight(i) * x[g.adjacency[i]];
+            }
+            y[u] = sum;
+        }
+    }
+
+    // w -= sum of (w . v_i) v_i over the first count basis vectors (classical Gram-Schmidt,
+    // so the coefficients and the update each take one sweep and split into tasks on pool)
+    static void orthogonalize(double[] w, double[][] basis, int count, ForkJoinPool pool) {
+        int n = w.length;
+        boolean parallel = pool != null && n >= PARALLEL_MIN_ENTRIES / 4;
+        double[] c = new double[count];
+        if (parallel) {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> c[i] = dot(w, basis[i]))).join();
+        } else {
+            for (int i = 0; i < count; i++) c[i] = dot(w, basis[i]);
+        }
+
+        if (!parallel) {
+            subtractRows(w, basis, c, 0, n);
+            return;
+        }
+        int tasks = (n + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+        pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(t ->
+                subtractRows(w, basis, c, t * ROWS_PER_TASK, Math.min(n, (t + 1) * ROWS_PER_TASK)))).join();
+    }
+
+    private static void subtractRows(double[] w, double[][] basis, double[] c, int from, int to) {
+        for (int i = 0; i < c.length; i++) {
+            double[] v = basis[i];
+            double ci = c[i];
+            for (int k = from; k < to; k++) w[k] -= ci * v[k];
+        }
+    }
+
+    // Eigenvalues (into d) and eigenvectors (columns of z) of a symmetric tridiagonal matrix
+    // with diagonal d and off-diagonal e[0..n-2], by the implicit QL method
+    static void tridiagonalEigen(double[] d, double[] e, double[][] z) {
+        int n = d.length;
+        for (int l = 0; l < n; l++) {
+            int iter = 0;
+            int m;
+            do {
+                for (m = l; m < n - 1; m++) {
+                    double dd = Math.abs(d[m]) + Math.abs(d[m + 1]);
+                    if (Math.abs(e[m]) <= 1e-15 * dd) break;
+                }
+                if (m != l) {
+                    if (iter++ == 60) throw new IllegalStateException("Tridiagonal eigensolver did not converge");
+                    double gg = (d[l + 1] - d[l]) / (2 * e[l]);
+                    double r = Math.hypot(gg, 1);
+                    gg = d[m] - d[l] + e[l] / (gg + (gg >= 0 ? r : -r));
+                    double s = 1, c = 1, p = 0;
+                    int i;
+                    for (i = m - 1; i >= l; i--) {
+                        double f = s * e[i];
+                        double b = c * e[i];
+                        r = Math.hypot(f, gg);
+                        e[i + 1] = r;
+                        if (r == 0) {
+                            d[i + 1] -= p;
+                            e[m] = 0;
+                            break;
+                        }
+                        s = f / r;
+                        c = gg / r;
+                        gg = d[i + 1] - p;
+                        r = (d[i] - gg) * s + 2 * c * b;
+                        p = s * r;
+                        d[i + 1] = gg + p;
+                        gg = c * r - b;
+                        for (int k = 0; k < n; k++) {
+                            f = z[k][i + 1];
+                            z[k][i + 1] = s * z[k][i] + c * f;
+                            z[k][i] = c * z[k][i] - s * f;
+                        }
+                    }
+                    if (r == 0 && i >= l) continue;
+                    d[l] -= p;
+                    e[l] = gg;
+                    e[m] = 0;
+                }
+            } while (m != l);
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) y[i] += a * x[i];
+    }
+
+    // Project out the constant vector (the eigenvector of eigenvalue 0)
+    private static void removeMean(double[] x) {
+        double mean = 0;
+        for (double v : x) mean += v;
+        mean /= x.length;
+        for (int i = 0; i < x.length; i++) x[i] -= mean;
+    }
+
+    private static void normalize(double[] x) {
+        double norm = Math.sqrt(dot(x, x));
+        if (norm == 0) return;
+        for (int i = 0; i < x.length; i++) x[i] /= norm;
+    }
+}
@@ -0,0 +1,7 @@
+// Receives algorithm steps from PartitionEngine as they happen.
+// The map is the engine's working array and is only valid during the call; copy it to keep it.
+// A step that highlights vertices changes only those vertices' parts since the previous step;
+// steps without highlights (vertex1 = vertex2 = -1) may change any part of the map.
+public interface StepListener {
+    void onStep(int[] map, int cutEdges, String description, int vertex1, int vertex2);
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands steps from a worker thread to the UI thread through a bounded queue.
+ * The engine side copies just what a step changed (the highlighted vertices' parts, or the
+ * whole map for unhighlighted steps) and blocks while the queue is full, so a slow consumer
+ * holds the engine back instead of letting memory grow. The consumer drains the queue into
+ * any StepListener, typically a StepTimeline.
+ */
+public class StepQueue implements StepListener {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    // One queued step; parts holds the parts of vertex1/vertex2, or the full map
+    private static class Entry {
+        int[] parts;
+        int cutEdges;
+        String description;
+        int vertex1, vertex2;
+    }
+
+    private final BlockingQueue<Entry> queue;
+    private final List<Entry> batch = new ArrayList<>();
+    private int[] current;   // consumer's copy of the map as of the last drained step
+
+    StepQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    StepQueue(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // Producer side, called on the engine's thread
+    public void onStep(int[] map, int cutEdges, String description, int vertex1, int vertex2) {
+        Entry e = new Entry();
+        if (vertex1 == -1 && vertex2 == -1) {
+            e.parts = map.clone();
+        } else {
+            e.parts = new int[]{vertex1 != -1 ? map[vertex1] : -1, vertex2 != -1 ? map[vertex2] : -1};
+        }
+        e.cutEdges = cutEdges;
+        e.description = description;
+        e.vertex1 = vertex1;
+        e.vertex2 = vertex2;
+        try {
+            queue.put(e);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Step delivery interrupted", ex);
+        }
+    }
+
+    // Consumer side: pass every queued step on to target, in order.
+    // Returns the number of steps delivered.
+    int drainTo(StepListener target) {
+        batch.clear();
+        queue.drainTo(batch);
+        for (Entry e : batch) {
+            if (e.vertex1 == -1 && e.vertex2 == -1) {
+                if (current == null) current = new int[e.parts.length];
+                System.arraycopy(e.parts, 0, current, 0, current.length);
+            } else {
+                if (e.vertex1 != -1) current[e.vertex1] = e.parts[0];
+                if (e.vertex2 != -1) current[e.vertex2] = e.parts[1];
+            }
+            target.onStep(current, e.cutEdges, e.description, e.vertex1, e.vertex2);
+        }
+        int delivered = batch.size();
+        batch.clear();
+        return delivered;
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recorded algorithm steps stored as periodic keyframes plus per-step deltas.
+ * A step only stores the vertices whose part changed; a full copy of the map is kept
+ * whenever the deltas since the last keyframe add up to n entries, so memory stays within
+ * about twice the delta volume and any step can be rebuilt in O(n).
+ */
+public class StepTimeline implements StepListener {
+
+    private final List<String> descriptions = new ArrayList<>();
+    private int[] cuts = new int[64];
+    private int[] highlight1 = new int[64];
+    private int[] highlight2 = new int[64];
+    private int[] deltaStart = new int[65];   // step i's changes are [deltaStart[i], deltaStart[i+1])
+    private int[] deltaVertex = new int[64];
+    private int[] deltaPart = new int[64];
+    private int deltaCount;
+
+    private final List<int[]> keyframes = new ArrayList<>();
+    private final List<Integer> keyframeSteps = new ArrayList<>();
+    private int sinceKeyframe;
+
+    private int[] last;                 // map as of the latest recorded step
+    private int[] cached;               // map as of step cachedStep, for sequential playback
+    private int cachedStep = -1;
+
+    public void onStep(int[] map, int cutEdges, String description, int vertex1, int vertex2) {
+        int step = descriptions.size();
+        ensureStepCapacity(step + 1);
+        descriptions.add(description);
+        cuts[step] = cutEdges;
+        highlight1[step] = vertex1;
+        highlight2[step] = vertex2;
+        deltaStart[step] = deltaCount;
+
+        if (last == null) {
+            last = map.clone();
+            keyframes.add(last.clone());
+            keyframeSteps.add(step);
+        } else if (vertex1 != -1 || vertex2 != -1) {
+            // Highlighted steps only change the highlighted vertices (see StepListener)
+            if (vertex1 != -1) record(map, vertex1);
+            if (vertex2 != -1) record(map, vertex2);
+        } else {
+            for (int v = 0; v < map.length; v++) record(map, v);
+        }
+        deltaStart[step + 1] = deltaCount;
+
+        if (sinceKeyframe >= last.length) {
+            keyframes.add(last.clone());
+            keyframeSteps.add(step);
+            sinceKeyframe = 0;
+        }
+        if (PartitionEngine.VERIFY_CUTS) verify(step, map);
+    }
+
+    // Rebuild step from its keyframe, not the playback cache, and compare it with the map
+    // the step was reported with
+    private void verify(int step, int[] map) {
+        cachedStep = -1;
+        if (!Arrays.equals(mapAt(step), map)) {
+            throw new IllegalStateException("Step " + step + " (" + descriptions.get(step)
+                    + ") does not rebuild to its map");
+        }
+    }
+
+    private void record(int[] map, int v) {
+        if (map[v] == last[v]) return;
+        if (deltaCount == deltaVertex.length) {
+            deltaVertex = Arrays.copyOf(deltaVertex, deltaCount * 2);
+            deltaPart = Arrays.copyOf(deltaPart, deltaCount * 2);
+        }
+        deltaVertex[deltaCount] = v;
+        deltaPart[deltaCount] = map[v];
+        deltaCount++;
+        sinceKeyframe++;
+        last[v] = map[v];
+    }
+
+    private void ensureStepCapacity(int steps) {
+        if (steps < cuts.length) return;
+        int capacity = cuts.length * 2;
+        cuts = Arrays.copyOf(cuts, capacity);
+        highlight1 = Arrays.copyOf(highlight1, capacity);
+        highlight2 = Arrays.copyOf(highlight2, capacity);
+        deltaStart = Arrays.copyOf(deltaStart, capacity + 1);
+    }
+
+    int size() {
+        return descriptions.size();
+    }
+
+    // Rebuild step i, including a copy of its partition map
+    AlgorithmStep get(int i) {
+        AlgorithmStep step = new AlgorithmStep(mapAt(i), cuts[i], descriptions.get(i));
+        step.highlight(highlight1[i], highlight2[i]);
+        return step;
+    }
+
+    int cutEdgesAt(int i) {
+        return cuts[i];
+    }
+
+    // Map as of step i. Moving forward from the previous request only applies the deltas in
+    // between; anything else starts from the nearest keyframe at or before i.
+    // The returned array is reused by the next call.
+    int[] mapAt(int i) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException("Step " + i);
+
+        int from;
+        if (cached != null && cachedStep <= i && cachedStep >= keyframeBefore(i)) {
+            from = cachedStep + 1;
+        } else {
+            int k = keyframeIndexBefore(i);
+            if (cached == null) cached = new int[last.length];
+            System.arraycopy(keyframes.get(k), 0, cached, 0, cached.length);
+            from = keyframeSteps.get(k) + 1;
+        }
+        for (int s = from; s <= i; s++) {
+            for (int d = deltaStart[s]; d < deltaStart[s + 1]; d++) {
+                cached[deltaVertex[d]] = deltaPart[d];
+            }
+        }
+        cachedStep = i;
+        return cached;
+    }
+
+    private int keyframeBefore(int i) {
+        return keyframeSteps.get(keyframeIndexBefore(i));
+    }
+
+    private int keyframeIndexBefore(int i) {
+        int lo = 0, hi = keyframeSteps.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (keyframeSteps.get(mid) <= i) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * One-pass streaming partitioner for graph files too large to load. Vertices are read in
+ * file order, each with its adjacency row, and placed for good the moment they are read,
+ * using only the parts of their already placed neighbors. LDG (linear deterministic greedy)
+ * picks the part maximizing edges-to-part * (1 - weight(part) / capacity); Fennel maximizes
+ * edges-to-part - alpha * ((weight(part) + w)^1.5 - weight(part)^1.5), alpha = sqrt(k) E / W^1.5.
+ * A part is never filled past the balance margin. The file is read twice through a
+ * GraphTokenizer: first for the pointer and weight lines, then for the adjacency line (and
+ * the edge weights beside it). What stays in memory is O(n + k): the pointers, the vertex
+ * weights and the partition map; the adjacency is never held.
+ */
+public class StreamingPartitioner {
+
+    static final double FENNEL_GAMMA = 1.5;
+
+    public enum Scoring {
+        LDG, FENNEL
+    }
+
+    private final Scoring scoring;
+    private int[] vertexWeights;
+    private long numEdges;
+
+    public StreamingPartitioner(Scoring scoring) {
+        this.scoring = scoring;
+    }
+
+    // Vertex weights of the last streamed file, or null if it had none
+    public int[] getVertexWeights() {
+        return vertexWeights;
+    }
+
+    // Number of edges of the last streamed file
+    public long getNumEdges() {
+        return numEdges;
+    }
+
+    public PartitionResult run(String path, int numParts, float margin) throws IOException {
+        long start = System.nanoTime();
+
+        // First pass: everything except the adjacency line
+        int n;
+        int[] pointers;
+        boolean edgeWeighted = false;
+        long totalEdgeWeight;
+        vertexWeights = null;
+        try (GraphTokenizer in = new GraphTokenizer(path)) {
+            n = in.nextInt();
+            if (n < numParts || numParts < 2) throw new IllegalArgumentException("Parts must be 2-" + n);
+            in.nextLine();
+            in.nextLine();
+            pointers = in.readInts(n + 1, "pointer");
+            totalEdgeWeight = pointers[n];
+            if (in.nextLine()) {
+                if (in.hasNext()) {
+                    edgeWeighted = true;
+                    totalEdgeWeight = 0;
+                    int count = 0;
+                    while (in.hasNext()) {
+                        int w = in.nextInt();
+                        if (w < 0) throw new IOException("Negative edge weight: " + w);
+                        totalEdgeWeight += w;
+                        count++;
+                    }
+                    if (count != pointers[n]) {
+                        throw new IOException("Invalid edge weight count: " + count + ", expected " + pointers[n]);
+                    }
+                }
+                if (in.nextLine() && in.hasNext()) {
+                    vertexWeights = GraphIO.readWeights(in, n, "vertex");
+                }
+            }
+        }
+        numEdges = pointers[n] / 2;
+
+        long totalWeight = n;
+        if (vertexWeights != null) {
+            totalWeight = 0;
+            for (int w : vertexWeights) totalWeight += w;
+        }
+        GraphIO.checkTotals(totalEdgeWeight, totalWeight);
+        // Same upper bound as PartBalance: margin percent over W/k, never less than one vertex
+        int maxVertexWeight = 1;
+        if (vertexWeights != null) {
+            for (int w : vertexWeights) maxVertexWeight = Math.max(maxVertexWeight, w);
+        }
+        double ideal = (double) totalWeight / numParts;
+        double capacity = Math.max(Math.floor(ideal) + maxVertexWeight, Math.floor(ideal * (1 + margin / 100.0)));
+        // Each edge appears in both rows, so the weights sum to twice the edge weight total
+        double alpha = Math.sqrt(numParts) * (totalEdgeWeight / 2.0) / Math.pow(totalWeight, FENNEL_GAMMA);
+
+        // Second pass: stream the rows, placing each vertex as it is read
+        int[] map = new int[n];
+        Arrays.fill(map, -1);
+        long[] partWeight = new long[numParts];
+        int[] connection = new int[numParts];
+        int[] touched = new int[numParts];
+        long cuts = 0;
+        try (GraphTokenizer adjacency = new GraphTokenizer(path);
+             GraphTokenizer weights = edgeWeighted ? new GraphTokenizer(path) : null) {
+            adjacency.nextLine();
+            if (weights != null) {
+                for (int i = 0; i < 3; i++) weights.nextLine();
+            }
+
+            for (int v = 0; v < n; v++) {
+                int count = 0;
+                for (int i = pointers[v]; i < pointers[v + 1]; i++) {
+                    int u = adjacency.nextInt();
+                    int w = weights != null ? weights.nextInt() : 1;
+                    if (u < 0 || u >= n) throw new IOException("Vertex id out of range: " + u);
+                    int p = map[u];
+                    if (p == -1 || w == 0) continue;
+                    if (connection[p] == 0) touched[count++] = p;
+                    connection[p] += w;
+                }
+
+                int vw = vertexWeights != null ? vertexWeights[v] : 1;
+                int best = lightest(partWeight);
+                double bestScore = score(connection[best], partWeight[best], vw, capacity, alpha);
+                for (int j = 0; j < count; j++) {
+                    int p = touched[j];
+                    if (partWeight[p] + vw > capacity) continue;
+                    double s = score(connection[p], partWeight[p], vw, capacity, alpha);
+                    if (s > bestScore || (s == bestScore && partWeight[p] < partWeight[best])) {
+                        best = p;
+                        bestScore = s;
+                    }
+                }
+
+                // Edges to already placed neighbors in other parts are now cut for good
+                for (int j = 0; j < count; j++) {
+                    if (touched[j] != best) cuts += connection[touched[j]];
+                    connection[touched[j]] = 0;
+                }
+                map[v] = best;
+                partWeight[best] += vw;
+            }
+        }
+
+        return new PartitionResult(map, numParts, (int) cuts, 1, System.nanoTime() - start);
+    }
+
+    private double score(int connection, long partWeight, int vertexWeight, double capacity, double alpha) {
+        if (scoring == Scoring.LDG) {
+            return connection * (1 - partWeight / capacity);
+        }
+        return connection - alpha * (Math.pow(partWeight + vertexWeight, FENNEL_GAMMA)
+                - Math.pow(partWeight, FENNEL_GAMMA));
+    }
+
+    // The lightest part has room if any part has; under both scores it is also the best part
+    // for a vertex without placed neighbors
+    private static int lightest(long[] partWeight) {
+        int best = 0;
+        for (int p = 1; p < partWeight.length; p++) {
+            if (partWeight[p] < partWeight[best]) best = p;
+        }
+        return best;
+    }
+}